@@ -17,13 +17,26 @@
 package dev.terminalmc.commandkeys;
 
 import com.mojang.blaze3d.platform.InputConstants;
-import com.mojang.datafixers.util.Pair;
+import dev.terminalmc.commandkeys.config.Admission;
 import dev.terminalmc.commandkeys.config.Config;
 import dev.terminalmc.commandkeys.config.Macro;
 import dev.terminalmc.commandkeys.config.Profile;
 import dev.terminalmc.commandkeys.gui.screen.OptionsScreen;
+import dev.terminalmc.commandkeys.util.ChatEvents;
+import dev.terminalmc.commandkeys.util.ChatHistory;
+import dev.terminalmc.commandkeys.util.KeybindUtil;
+import dev.terminalmc.commandkeys.util.MessageTemplate;
+import dev.terminalmc.commandkeys.util.MillisScheduler;
 import dev.terminalmc.commandkeys.util.ModLogger;
+import dev.terminalmc.commandkeys.util.PlaceholderContext;
 import dev.terminalmc.commandkeys.util.PlaceholderUtil;
+import dev.terminalmc.commandkeys.util.RateController;
+import dev.terminalmc.commandkeys.util.RateLimiter;
+import dev.terminalmc.commandkeys.util.SendCoalescer;
+import dev.terminalmc.commandkeys.util.SendQueue;
+import dev.terminalmc.commandkeys.util.TickBudget;
+import dev.terminalmc.commandkeys.util.TimingWheel;
+import dev.terminalmc.commandkeys.util.WorldState;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.KeyMapping;
 import net.minecraft.client.Minecraft;
@@ -32,9 +45,7 @@ import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
-
-import java.util.ArrayList;
-import java.util.List;
+import net.minecraft.network.chat.contents.TranslatableContents;
 
 import static dev.terminalmc.commandkeys.util.Localization.localized;
 import static dev.terminalmc.commandkeys.util.Localization.translationKey;
@@ -54,13 +65,60 @@ public class CommandKeys {
     
     public static String lastConnection = "";
     
-    private static final List<TickCounter> rateLimiter = new ArrayList<>();
-    private static class TickCounter {
-        int time = 0;
-        int tick() {
-            return time++;
-        }
-    }
+    /**
+     * Number of client ticks since startup.
+     */
+    private static long tickCount = 0;
+    private static final RateLimiter rateLimiter = new RateLimiter();
+    private static final SendQueue sendQueue = new SendQueue(16, CommandKeys::onSendDropped);
+    private static final SendCoalescer coalescer = new SendCoalescer();
+    private static final RateController rateController = new RateController(0, 0);
+    /**
+     * The link whose learned rate is loaded into {@link #rateController}.
+     */
+    private static String rateLink = null;
+    /**
+     * Schedules delayed macro messages. Only ticked while messages can be 
+     * sent, so that delays are not shortened by pauses.
+     */
+    public static final TimingWheel scheduler = new TimingWheel();
+    /**
+     * Schedules repeating macro messages. Ticked every client tick, so that
+     * it stays aligned with {@link #tickCount} and repeat periods do not
+     * drift.
+     */
+    public static final TimingWheel repeatScheduler = new TimingWheel();
+    /**
+     * Bounds the time spent on macro work per tick and per frame. Macro runs
+     * which find it spent postpone their due messages to the next tick or 
+     * frame, and the send queue stops draining.
+     */
+    public static final TickBudget tickBudget = new TickBudget();
+    /**
+     * Recent chat messages, searched by placeholders.
+     */
+    public static final ChatHistory chatHistory = new ChatHistory();
+    /**
+     * The latest chat events of each type, used by placeholders.
+     */
+    public static final ChatEvents chatEvents = new ChatEvents();
+    /**
+     * World lookups for placeholders, shared by all messages sent within a
+     * tick so that they are made once per tick rather than once per message.
+     */
+    public static final WorldState worldState = new WorldState();
+    private static final PlaceholderContext placeholderContext = new PlaceholderContext();
+    /**
+     * Whether messages could be sent as of the last tick.
+     */
+    private static boolean couldSend = false;
+    /**
+     * Minimum number of ticks between notifications of dropped messages.
+     */
+    private static final int DROP_NOTICE_TICKS = 20;
+    private static long lastDropNotice = -DROP_NOTICE_TICKS;
+    // Messages dropped since the last notification, and not yet reported
+    private static int unreportedDrops = 0;
 
     public static void init() {
         Config.getAndSave();
@@ -71,14 +129,61 @@ public class CommandKeys {
         while (CONFIG_KEY.consumeClick()) {
             mc.setScreen(new OptionsScreen(mc.screen, true));
         }
-        // Tick ratelimiter
-        rateLimiter.removeIf((tc) -> tc.tick() > Config.get().getRatelimitTicks());
-        // Tick macros
+        tickCount++;
+        tickBudget.begin(Config.get().getTickBudgetMicros());
+        worldState.invalidate();
+        repeatScheduler.tick();
+        // Release coalesced messages
+        if (mc.player == null) {
+            coalescer.clear();
+        } else if (!coalescer.isEmpty()) {
+            coalescer.flush(tickCount, Config.get().getCoalesceWindowTicks(), 
+                    CommandKeys::dispatch);
+        }
+        // Drain send queue
+        if (mc.player == null) {
+            sendQueue.clear();
+        } else if (!sendQueue.isEmpty() && !mc.isPaused()) {
+            configureRatelimit(Config.get());
+            drainSendQueue();
+        }
+        // Report drops held back by the notification limit
+        if (unreportedDrops > 0 && tickCount - lastDropNotice >= DROP_NOTICE_TICKS) {
+            Minecraft.getInstance().gui.getChat().addMessage(PREFIX.copy().append(
+                    localized("message", "sendDroppedCount",
+                            Component.literal(String.valueOf(unreportedDrops))
+                                    .withStyle(ChatFormatting.GRAY))
+                            .withStyle(ChatFormatting.RED)));
+            unreportedDrops = 0;
+            lastDropNotice = tickCount;
+        }
+        // Tick key sequence timeout
+        if (mc.screen == null) KeybindUtil.tickSequences();
+        // Tick scheduled messages
+        boolean canSend = canSend();
+        if (canSend) {
+            if (!couldSend) profile().getMacros().forEach(Macro::catchUp);
+            scheduler.tick();
+        }
+        couldSend = canSend;
+        tickBudget.end();
+    }
+
+    /**
+     * Called on the client thread at the start of each frame.
+     */
+    public static void onFrame(Minecraft mc) {
+        // Run millisecond-scheduled messages
         if (mc.player != null && mc.level != null && !mc.isPaused()) {
-            Config.get().activeProfile().getMacros().forEach(Macro::tick);
-            // Note: If multiple macros are triggered in the same tick, the
-            // message order will be based on their list positions, not the 
-            // order in which they were triggered order.
+            tickBudget.begin(Config.get().getTickBudgetMicros());
+            MillisScheduler.drain();
+            tickBudget.end();
+            // Release messages coalesced by millisecond-scheduled macros 
+            // now, rather than holding them until the end of the tick
+            if (coalescer.hasPending()) {
+                coalescer.flush(tickCount, Config.get().getCoalesceWindowTicks(), 
+                        CommandKeys::dispatch);
+            }
         }
     }
 
@@ -103,41 +208,345 @@ public class CommandKeys {
         return Minecraft.getInstance().getSingleplayerServer() != null;
     }
     
+    public static long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * @return {@code true} if scheduled messages can currently be sent, 
+     * {@code false} otherwise.
+     */
+    public static boolean canSend() {
+        Minecraft mc = Minecraft.getInstance();
+        return mc.player != null && mc.level != null && !mc.isPaused();
+    }
+    
+    private static void configureRatelimit(Config config) {
+        if (config.isRatelimitAdaptive()) {
+            // The burst limit stays fixed and the sustained rate is learned, 
+            // up to the burst rate.
+            double maxRate = (double)config.getRatelimitCount() / config.getRatelimitTicks();
+            if (!lastConnection.equals(rateLink)) {
+                storeLearnedRate();
+                rateLink = lastConnection;
+                Double learned = Profile.LINK_RATE_MAP.get(rateLink);
+                rateController.reset(learned == null 
+                        ? maxRate 
+                        : learned / RateController.TICKS_PER_SECOND, maxRate);
+            } else {
+                rateController.setMaxRate(maxRate);
+            }
+            rateLimiter.configure(config.getRatelimitCount(), config.getRatelimitTicks(),
+                    config.getRatelimitCount(), rateController.getRate());
+        } else {
+            rateLimiter.configure(config.getRatelimitCount(), config.getRatelimitTicks(),
+                    config.getRatelimitSustainedCount(), config.getRatelimitSustainedTicks());
+        }
+        sendQueue.setCapacity(config.getSendQueueSize());
+    }
+
+    private static void storeLearnedRate() {
+        if (rateLink != null && !rateLink.isBlank()) {
+            Profile.LINK_RATE_MAP.put(rateLink, 
+                    rateController.getRate() * RateController.TICKS_PER_SECOND);
+        }
+    }
+
+    /**
+     * Called when a run of {@code macro} is refused by admission control.
+     */
+    public static void onRunRefused(Macro macro) {
+        Config config = Config.get();
+        Minecraft.getInstance().gui.getChat().addMessage(PREFIX.copy().append(
+                localized("message", "runRefused",
+                        macro.getKeybind().getKey().getDisplayName().copy()
+                                .withStyle(ChatFormatting.GRAY),
+                        Component.literal(String.valueOf(config.getMaxRunsPerMacro()))
+                                .withStyle(ChatFormatting.GRAY),
+                        Component.literal(String.valueOf(config.getMaxActiveRuns()))
+                                .withStyle(ChatFormatting.GRAY),
+                        Component.literal(String.valueOf(config.getMaxPendingSends()))
+                                .withStyle(ChatFormatting.GRAY),
+                        Component.literal(String.valueOf(Admission.getRefusedRuns()))
+                                .withStyle(ChatFormatting.GRAY))
+                        .withStyle(ChatFormatting.RED)));
+    }
+
+    /**
+     * Called when a message is added to the chat.
+     */
+    public static void onChatMessage(Component message) {
+        chatHistory.setDepth(Config.get().getChatHistoryDepth());
+        chatHistory.add(message);
+        chatEvents.onMessage(message);
+        PlaceholderUtil.invalidate(PlaceholderUtil.Scope.CHAT);
+    }
+
+    /**
+     * Called when the chat is cleared.
+     */
+    public static void onChatCleared() {
+        chatHistory.clear();
+        chatEvents.clear();
+        PlaceholderUtil.invalidate(PlaceholderUtil.Scope.CHAT);
+    }
+
+    /**
+     * Called when a message is added to the sent message history.
+     */
+    public static void onHistoryChanged() {
+        PlaceholderUtil.invalidate(PlaceholderUtil.Scope.HISTORY);
+    }
+
+    /**
+     * Called on the client thread when a system chat message is received.
+     */
+    public static void onSystemMessage(Component message) {
+        Config config = Config.get();
+        if (config.isRatelimitAdaptive() && config.isThrottleMessage(message.getString())) {
+            onThrottle(config);
+        }
+    }
+
+    /**
+     * Called on the client thread when the server closes the connection.
+     */
+    public static void onDisconnect(Component reason) {
+        Config config = Config.get();
+        if (!config.isRatelimitAdaptive()) return;
+        if ((reason.getContents() instanceof TranslatableContents contents
+                && contents.getKey().equals("disconnect.spam"))
+                || config.isThrottleMessage(reason.getString())) {
+            onThrottle(config);
+        }
+        storeLearnedRate();
+        Config.save();
+    }
+
+    /**
+     * Reduces the learned send rate of the current link.
+     */
+    private static void onThrottle(Config config) {
+        configureRatelimit(config);
+        if (rateController.onThrottle(tickCount)) {
+            storeLearnedRate();
+            LOG.info("Reduced send rate for '{}' to {}/s", rateLink,
+                    rateController.getRate() * RateController.TICKS_PER_SECOND);
+        }
+    }
+
+    /**
+     * @return {@code true} if messages are currently subject to the send
+     * queue, {@code false} otherwise.
+     */
+    private static boolean isQueueing(Config config) {
+        return config.ratelimitMode.equals(Config.RatelimitMode.QUEUE)
+                && (!inSingleplayer() || config.ratelimitSp);
+    }
+
+    /**
+     * @return the number of messages that can be added to the send queue 
+     * before its overflow policy applies, or {@link Integer#MAX_VALUE} if
+     * messages are not being queued.
+     */
+    public static int getSendQueueRemaining() {
+        Config config = Config.get();
+        if (!isQueueing(config)) return Integer.MAX_VALUE;
+        configureRatelimit(config);
+        return sendQueue.remaining();
+    }
+
+    /**
+     * @return the number of messages that can currently be sent or queued
+     * without exceeding the ratelimit burst or the send queue capacity.
+     */
+    public static int getSendBudget() {
+        Config config = Config.get();
+        if (!isQueueing(config)) return config.getRatelimitCount();
+        configureRatelimit(config);
+        return sendQueue.remaining();
+    }
+
+    /**
+     * @return {@code true} if new activations are being refused because the
+     * send queue is full and its policy is 
+     * {@link SendQueue.OverflowPolicy#REJECT}, {@code false} otherwise.
+     */
+    public static boolean isSendQueueRejecting() {
+        return Config.get().sendQueuePolicy.equals(SendQueue.OverflowPolicy.REJECT)
+                && getSendQueueRemaining() == 0;
+    }
+    
     public static boolean canTrigger(InputConstants.Key key) {
-        if (
-                (!inSingleplayer() || Config.get().ratelimitSp) 
-                && rateLimiter.size() >= Config.get().getRatelimitCount()) 
-        {
+        Config config = Config.get();
+        configureRatelimit(config);
+        if (config.ratelimitMode.equals(Config.RatelimitMode.QUEUE)) {
+            if (!isSendQueueRejecting()) return true;
+            Minecraft.getInstance().gui.getChat().addMessage(PREFIX.copy().append(
+                    localized("message", "sendQueueFull",
+                            key.getDisplayName().copy().withStyle(ChatFormatting.GRAY),
+                            Component.literal(String.valueOf(sendQueue.capacity()))
+                                    .withStyle(ChatFormatting.GRAY))
+                            .withStyle(ChatFormatting.RED)));
+            return false;
+        }
+        if ((!inSingleplayer() || config.ratelimitSp) && rateLimiter.isLimited(tickCount)) {
             Minecraft.getInstance().gui.getChat().addMessage(PREFIX.copy().append(
                     localized("message", "sendBlocked",
                             key.getDisplayName().copy().withStyle(ChatFormatting.GRAY),
-                            Component.literal(String.valueOf(Config.get().getRatelimitCount()))
+                            Component.literal(String.valueOf(config.getRatelimitCount()))
                                     .withStyle(ChatFormatting.GRAY), 
-                            Component.literal(String.valueOf(Config.get().getRatelimitTicks()))
+                            Component.literal(String.valueOf(config.getRatelimitTicks()))
                                     .withStyle(ChatFormatting.GRAY))
                             .withStyle(ChatFormatting.RED)));
-            if (Config.getAndSave().ratelimitStrict) rateLimiter.add(new TickCounter());
+            if (config.ratelimitStrict) rateLimiter.record(tickCount);
             return false;
         }
-        rateLimiter.add(new TickCounter());
+        rateLimiter.record(tickCount);
         return true;
     }
 
+    /**
+     * Submits a macro message for sending. If coalescing is enabled, the
+     * message is held until the end of the tick or frame (see 
+     * {@link SendCoalescer}), otherwise it is dispatched immediately.
+     * @param source the identity of the sender, used to share the send 
+     * queue fairly (see {@link SendQueue}).
+     * @param priority whether the message results directly from user input.
+     */
+    public static void submit(MessageTemplate message, boolean addToHistory, boolean showHudMsg, 
+                              boolean ignoreRatelimit, Object source, boolean priority) {
+        if (Config.get().coalesceSends) {
+            coalescer.offer(message, addToHistory, showHudMsg, ignoreRatelimit, 
+                    source, priority);
+        } else {
+            dispatch(message, addToHistory, showHudMsg, ignoreRatelimit, source, priority);
+        }
+    }
+
+    /**
+     * Discards all messages from {@code source} which are waiting to be 
+     * coalesced or in the send queue.
+     */
+    public static void discard(Object source) {
+        coalescer.removeSource(source);
+        sendQueue.removeLane(source);
+    }
+
+    /**
+     * Sends {@code message} immediately if {@code ignoreRatelimit} is set,
+     * otherwise via {@link CommandKeys#enqueue}.
+     */
+    private static void dispatch(MessageTemplate message, boolean addToHistory, boolean showHudMsg,
+                                 boolean ignoreRatelimit, Object source, boolean priority) {
+        if (ignoreRatelimit) send(message, addToHistory, showHudMsg);
+        else enqueue(message, addToHistory, showHudMsg, source, priority);
+    }
+
+    /**
+     * Sends {@code message} if allowed by the ratelimit, otherwise adds it to
+     * the priority lane of the send queue to be sent when allowed. If the 
+     * ratelimit is not in {@link Config.RatelimitMode#QUEUE} mode, sends 
+     * immediately.
+     */
+    public static void enqueue(String message, boolean addToHistory, boolean showHudMsg) {
+        enqueue(MessageTemplate.of(message), addToHistory, showHudMsg, null, true);
+    }
+
+    /**
+     * Sends {@code message} if allowed by the ratelimit, otherwise adds it to
+     * the lane of {@code source} in the send queue to be sent when allowed. 
+     * If the ratelimit is not in {@link Config.RatelimitMode#QUEUE} mode, 
+     * sends immediately.
+     */
+    public static void enqueue(MessageTemplate message, boolean addToHistory, boolean showHudMsg,
+                               Object source, boolean priority) {
+        Config config = Config.get();
+        if (!isQueueing(config)) {
+            send(message, addToHistory, showHudMsg);
+            return;
+        }
+        configureRatelimit(config);
+        drainSendQueue();
+        // Not gated by the tick budget, as work deferred by the budget is held
+        // by its macro run (see MacroRun#advance) rather than queued, where
+        // it would be subject to the overflow policy
+        if (sendQueue.isEmpty() && rateLimiter.tryAcquire(tickCount)) {
+            sendLimited(message, addToHistory, showHudMsg);
+        } else if (!sendQueue.offer(message, addToHistory, showHudMsg, config.sendQueuePolicy, 
+                source, priority)) {
+            onSendDropped(message);
+        }
+    }
+
+    /**
+     * Notifies the user that {@code message} was discarded by the send queue.
+     * At most one message is named per {@link #DROP_NOTICE_TICKS}; further 
+     * drops are counted and reported together at the end of the period.
+     */
+    private static void onSendDropped(MessageTemplate message) {
+        if (tickCount - lastDropNotice < DROP_NOTICE_TICKS) {
+            unreportedDrops++;
+            return;
+        }
+        lastDropNotice = tickCount;
+        Minecraft.getInstance().gui.getChat().addMessage(PREFIX.copy().append(
+                localized("message", "sendDropped",
+                        Component.literal(message.getSource()).withStyle(ChatFormatting.GRAY))
+                        .withStyle(ChatFormatting.RED)));
+    }
+
+    /**
+     * Sends queued messages for as long as the ratelimit and the tick budget
+     * allow.
+     */
+    private static void drainSendQueue() {
+        while (!sendQueue.isEmpty() && !tickBudget.isSpent() 
+                && rateLimiter.tryAcquire(tickCount)) {
+            sendQueue.poll(CommandKeys::sendLimited);
+        }
+    }
+
+    /**
+     * Sends a message admitted by the ratelimit, recording it for the
+     * adaptive ratelimit. Sends which bypass the ratelimit are not recorded,
+     * as they tell nothing of the rate the server accepts.
+     */
+    private static void sendLimited(MessageTemplate message, boolean addToHistory, 
+                                    boolean showHudMsg) {
+        if (send(false, message, addToHistory, showHudMsg) 
+                && Config.get().isRatelimitAdaptive()) {
+            rateController.onSend(tickCount);
+        }
+    }
+
     public static void send(String message, boolean addToHistory, boolean showHudMsg) {
+        send(MessageTemplate.of(message), addToHistory, showHudMsg);
+    }
+
+    public static void send(MessageTemplate message, boolean addToHistory, boolean showHudMsg) {
         send(false, message, addToHistory, showHudMsg);
     }
 
     public static void type(String message) {
+        type(MessageTemplate.of(message));
+    }
+
+    public static void type(MessageTemplate message) {
         send(true, message, false, false);
     }
 
-    public static void send(boolean type, String message, boolean addToHistory, boolean showHudMsg) {
+    /**
+     * @return {@code true} if the message was sent to the server, 
+     * {@code false} otherwise.
+     */
+    public static boolean send(boolean type, MessageTemplate template, boolean addToHistory, 
+                               boolean showHudMsg) {
         Minecraft mc = Minecraft.getInstance();
-        if (mc.player == null) return;
-        Pair<String,Integer> result = PlaceholderUtil.replace(message);
-        message = result.getFirst();
-        int faults = result.getSecond();
-        if (faults == 0) {
+        if (mc.player == null) return false;
+        boolean valid = PlaceholderUtil.replace(template, placeholderContext);
+        String message = placeholderContext.getResult();
+        if (valid) {
             if (type) {
                 mc.setScreen(new ChatScreen(message));
             } else {
@@ -151,13 +560,15 @@ public class CommandKeys {
                 if (addToHistory) mc.gui.getChat().addRecentChat(message);
                 if (showHudMsg) mc.gui.setOverlayMessage(Component.literal(message)
                         .withStyle(ChatFormatting.GRAY), false);
+                return true;
             }
         } else {
             MutableComponent msg = PREFIX.copy();
             msg.append(localized("message", "placeholderFault",
-                    Component.literal(message).withStyle(ChatFormatting.GRAY))
+                    Component.literal(template.getSource()).withStyle(ChatFormatting.GRAY))
                     .withStyle(ChatFormatting.RED));
             mc.gui.getChat().addMessage(msg);
         }
+        return false;
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.config;
+
+/**
+ * Global admission control for {@link MacroRun} instances, bounding the 
+ * number of runs in flight and the number of messages they have yet to send,
+ * so that a held or repeatedly pressed key cannot accumulate unbounded work.
+ *
+ * <p>Counters of admissions and refusals are kept for the lifetime of the
+ * client, so that limits being hit can be reported.</p>
+ */
+public final class Admission {
+    private static int activeRuns = 0;
+    private static long pendingSends = 0;
+
+    // Counters
+    private static long refusedRuns = 0;
+    private static long ignoredTriggers = 0;
+    private static long restartedRuns = 0;
+    private static long queuedTriggers = 0;
+
+    private Admission() {
+    }
+
+    /**
+     * Admits a new run if it would not exceed the global limits of
+     * {@link Config}.
+     * @param sends the number of messages the run will send, or 0 if it 
+     * repeats indefinitely.
+     * @return {@code true} if the run was admitted, {@code false} otherwise.
+     */
+    static boolean admit(int sends) {
+        Config config = Config.get();
+        if (activeRuns >= config.getMaxActiveRuns() 
+                || (sends > 0 && pendingSends + sends > config.getMaxPendingSends())) {
+            refusedRuns++;
+            return false;
+        }
+        activeRuns++;
+        pendingSends += sends;
+        return true;
+    }
+
+    /**
+     * Records that an admitted run has sent a message.
+     */
+    static void sent() {
+        if (pendingSends > 0) pendingSends--;
+    }
+
+    /**
+     * Records that an admitted run has ended.
+     * @param unsent the number of messages the run had yet to send.
+     */
+    static void release(int unsent) {
+        activeRuns = Math.max(0, activeRuns - 1);
+        pendingSends = Math.max(0, pendingSends - unsent);
+    }
+
+    static void refused() {
+        refusedRuns++;
+    }
+
+    static void ignored() {
+        ignoredTriggers++;
+    }
+
+    static void restarted() {
+        restartedRuns++;
+    }
+
+    static void queued() {
+        queuedTriggers++;
+    }
+
+    public static int getActiveRuns() {
+        return activeRuns;
+    }
+
+    public static long getPendingSends() {
+        return pendingSends;
+    }
+
+    /**
+     * @return the number of runs refused for exceeding a limit.
+     */
+    public static long getRefusedRuns() {
+        return refusedRuns;
+    }
+
+    /**
+     * @return the number of triggers ignored by 
+     * {@link Macro.RetriggerPolicy#IGNORE}.
+     */
+    public static long getIgnoredTriggers() {
+        return ignoredTriggers;
+    }
+
+    /**
+     * @return the number of runs cancelled by 
+     * {@link Macro.RetriggerPolicy#RESTART}.
+     */
+    public static long getRestartedRuns() {
+        return restartedRuns;
+    }
+
+    /**
+     * @return the number of triggers deferred or merged by 
+     * {@link Macro.RetriggerPolicy#QUEUE_ONE}.
+     */
+    public static long getQueuedTriggers() {
+        return queuedTriggers;
+    }
+}
@@ -18,6 +18,7 @@ package dev.terminalmc.commandkeys.config;
 
 import com.google.gson.*;
 import dev.terminalmc.commandkeys.CommandKeys;
+import dev.terminalmc.commandkeys.util.SendQueue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -27,11 +28,12 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static dev.terminalmc.commandkeys.config.Profile.LINK_PROFILE_MAP;
+import static dev.terminalmc.commandkeys.config.Profile.LINK_RATE_MAP;
 
 /**
  * Config consists of a list of {@link Profile} instances, two {@code int}s to 
@@ -48,7 +50,7 @@ import static dev.terminalmc.commandkeys.config.Profile.LINK_PROFILE_MAP;
  * multiplayer default instance.</p>
  */
 public class Config {
-    public final int version = 5;
+    public final int version = 14;
     private static final Path DIR_PATH = Path.of("config");
     private static final String FILE_NAME = CommandKeys.MOD_ID + ".json";
     private static final Gson GSON = new GsonBuilder()
@@ -56,6 +58,7 @@ public class Config {
             .registerTypeAdapter(Profile.class, new Profile.Deserializer())
             .registerTypeAdapter(Macro.class, new Macro.Deserializer())
             .registerTypeAdapter(Keybind.class, new Keybind.Deserializer())
+            .registerTypeAdapter(KeySequence.class, new KeySequence.Deserializer())
             .registerTypeAdapter(Message.class, new Message.Deserializer())
             .setPrettyPrinting()
             .create();
@@ -74,6 +77,63 @@ public class Config {
     private int ratelimitTicks;
     public boolean ratelimitStrict;
     public boolean ratelimitSp;
+    private int ratelimitSustainedCount;
+    private int ratelimitSustainedTicks;
+    public RatelimitMode ratelimitMode;
+    public enum RatelimitMode {
+        /**
+         * Activations exceeding the ratelimit are blocked.
+         */
+        BLOCK,
+        /**
+         * Messages exceeding the ratelimit are queued and sent when allowed.
+         */
+        QUEUE,
+    }
+    private int sendQueueSize;
+    public SendQueue.OverflowPolicy sendQueuePolicy;
+    public boolean ratelimitAdaptive;
+    private final List<String> throttlePatterns;
+    private transient @Nullable List<Pattern> compiledThrottlePatterns;
+    /**
+     * The learned sustained rate of each link, in messages per second. Copied
+     * into {@link Profile#LINK_RATE_MAP} when this config becomes the active
+     * instance, and updated from it on save.
+     */
+    private final Map<String, Double> linkRates;
+    /**
+     * Anchored to the start of the message, so that player chat relayed as
+     * system messages (e.g. {@code <Steve> slow down}) does not match.
+     */
+    public static final List<String> DEFAULT_THROTTLE_PATTERNS = List.of(
+            "(?i)^(you are |you're )?(sending|typing|chatting)( messages| commands)? too (fast|quickly)",
+            "(?i)^(please )?slow down[.!]*$",
+            "(?i)^please wait( \\d+ seconds?)? before");
+    /**
+     * The unanchored defaults of config version 9, replaced on load.
+     */
+    private static final List<String> OLD_THROTTLE_PATTERNS = List.of(
+            "(?i)(sending|typing|chatting).* too (fast|quickly)",
+            "(?i)slow down",
+            "(?i)please wait before");
+    public boolean coalesceSends;
+    private int coalesceWindowTicks;
+
+    // Admission limits
+    private int maxRunsPerMacro;
+    private int maxActiveRuns;
+    private int maxPendingSends;
+
+    // Tick work options
+    private int tickBudgetMicros;
+
+    // Placeholder options
+    private int chatHistoryDepth;
+    private int lookRange;
+    private boolean lookFluids;
+
+    // Key sequence options
+    private int sequenceTimeoutTicks;
 
     /**
      * Creates a profile list with a single profile, set as both singleplayer
@@ -81,7 +141,10 @@ public class Config {
      */
     public Config() {
         this(new ArrayList<>(List.of(new Profile("Default Profile"))), 0, 0, 
-                Macro.ConflictStrategy.SUBMIT, Macro.SendMode.SEND, 4, 20, false, false);
+                Macro.ConflictStrategy.SUBMIT, Macro.SendMode.SEND, 4, 20, false, false, 0, 0, 
+                RatelimitMode.BLOCK, 16, SendQueue.OverflowPolicy.REJECT, false, 
+                new ArrayList<>(DEFAULT_THROTTLE_PATTERNS), new HashMap<>(), false, 20, 
+                8, 64, 4096, 2000, 50, 0, false, 20);
     }
 
     /**
@@ -89,7 +152,15 @@ public class Config {
      */
     private Config(List<Profile> profiles, int spDefault, int mpDefault, 
                    Macro.ConflictStrategy defaultConflictStrategy, Macro.SendMode defaultSendMode,
-                   int ratelimitCount, int ratelimitTicks, boolean ratelimitStrict, boolean ratelimitSp) {
+                   int ratelimitCount, int ratelimitTicks, boolean ratelimitStrict, boolean ratelimitSp,
+                   int ratelimitSustainedCount, int ratelimitSustainedTicks, 
+                   RatelimitMode ratelimitMode, int sendQueueSize, 
+                   SendQueue.OverflowPolicy sendQueuePolicy, boolean ratelimitAdaptive,
+                   List<String> throttlePatterns, Map<String, Double> linkRates,
+                   boolean coalesceSends, int coalesceWindowTicks, int maxRunsPerMacro,
+                   int maxActiveRuns, int maxPendingSends, int tickBudgetMicros, 
+                   int chatHistoryDepth, int lookRange, boolean lookFluids, 
+                   int sequenceTimeoutTicks) {
         this.profiles = profiles;
         this.spDefault = spDefault;
         this.mpDefault = mpDefault;
@@ -100,6 +171,24 @@ public class Config {
         this.ratelimitTicks = ratelimitTicks;
         this.ratelimitStrict = ratelimitStrict;
         this.ratelimitSp = ratelimitSp;
+        this.ratelimitSustainedCount = ratelimitSustainedCount;
+        this.ratelimitSustainedTicks = ratelimitSustainedTicks;
+        this.ratelimitMode = ratelimitMode;
+        this.sendQueueSize = sendQueueSize;
+        this.sendQueuePolicy = sendQueuePolicy;
+        this.ratelimitAdaptive = ratelimitAdaptive;
+        this.throttlePatterns = throttlePatterns;
+        this.linkRates = linkRates;
+        this.coalesceSends = coalesceSends;
+        this.coalesceWindowTicks = coalesceWindowTicks;
+        this.maxRunsPerMacro = maxRunsPerMacro;
+        this.maxActiveRuns = maxActiveRuns;
+        this.maxPendingSends = maxPendingSends;
+        this.tickBudgetMicros = tickBudgetMicros;
+        this.chatHistoryDepth = chatHistoryDepth;
+        this.lookRange = lookRange;
+        this.lookFluids = lookFluids;
+        this.sequenceTimeoutTicks = sequenceTimeoutTicks;
     }
 
     public int getSpDefault() {
@@ -139,6 +228,193 @@ public class Config {
         if (ticks < 1) throw new IllegalArgumentException();
         this.ratelimitTicks = ticks;
     }
+
+    /**
+     * @return the number of messages allowed per 
+     * {@link Config#getRatelimitSustainedTicks()} over the long term, or 0 if
+     * only the burst ratelimit applies.
+     */
+    public int getRatelimitSustainedCount() {
+        return ratelimitSustainedCount;
+    }
+
+    public void setRatelimitSustainedCount(int count) {
+        if (count < 0) throw new IllegalArgumentException();
+        this.ratelimitSustainedCount = count;
+    }
+
+    public int getRatelimitSustainedTicks() {
+        return ratelimitSustainedTicks;
+    }
+
+    public void setRatelimitSustainedTicks(int ticks) {
+        if (ticks < 0) throw new IllegalArgumentException();
+        this.ratelimitSustainedTicks = ticks;
+    }
+
+    public int getSendQueueSize() {
+        return sendQueueSize;
+    }
+
+    public void setSendQueueSize(int size) {
+        if (size < 1) throw new IllegalArgumentException();
+        this.sendQueueSize = size;
+    }
+
+    /**
+     * @return an unmodifiable view of the list of regular expressions which,
+     * if found in a system chat message, indicate that messages are being
+     * sent too fast.
+     */
+    public List<String> getThrottlePatterns() {
+        return Collections.unmodifiableList(throttlePatterns);
+    }
+
+    /**
+     * @return {@code true} if the sustained rate is learned, which applies 
+     * only in {@link RatelimitMode#QUEUE} mode, where each sent message is 
+     * known to the ratelimit. {@code false} otherwise.
+     */
+    public boolean isRatelimitAdaptive() {
+        return ratelimitAdaptive && ratelimitMode.equals(RatelimitMode.QUEUE);
+    }
+
+    public void setThrottlePatterns(List<String> patterns) {
+        throttlePatterns.clear();
+        throttlePatterns.addAll(patterns);
+        compiledThrottlePatterns = null;
+    }
+
+    /**
+     * @return {@code true} if {@code message} matches any of the throttle
+     * patterns, {@code false} otherwise.
+     */
+    public boolean isThrottleMessage(String message) {
+        if (compiledThrottlePatterns == null) {
+            compiledThrottlePatterns = new ArrayList<>();
+            for (String regex : throttlePatterns) {
+                try {
+                    compiledThrottlePatterns.add(Pattern.compile(regex));
+                } catch (PatternSyntaxException e) {
+                    CommandKeys.LOG.warn("Invalid throttle pattern '{}'", regex);
+                }
+            }
+        }
+        for (Pattern pattern : compiledThrottlePatterns) {
+            if (pattern.matcher(message).find()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of ticks for which a sent message suppresses equal
+     * messages, when {@link Config#coalesceSends} is enabled.
+     */
+    public int getCoalesceWindowTicks() {
+        return coalesceWindowTicks;
+    }
+
+    public void setCoalesceWindowTicks(int ticks) {
+        if (ticks < 0) throw new IllegalArgumentException();
+        this.coalesceWindowTicks = ticks;
+    }
+
+    /**
+     * @return the maximum number of concurrent non-repeating runs of a macro
+     * using {@link Macro.RetriggerPolicy#PARALLEL}.
+     */
+    public int getMaxRunsPerMacro() {
+        return maxRunsPerMacro;
+    }
+
+    public void setMaxRunsPerMacro(int max) {
+        if (max < 1) throw new IllegalArgumentException();
+        this.maxRunsPerMacro = max;
+    }
+
+    /**
+     * @return the maximum number of concurrent runs across all macros.
+     */
+    public int getMaxActiveRuns() {
+        return maxActiveRuns;
+    }
+
+    public void setMaxActiveRuns(int max) {
+        if (max < 1) throw new IllegalArgumentException();
+        this.maxActiveRuns = max;
+    }
+
+    /**
+     * @return the maximum number of messages yet to be sent by all 
+     * non-repeating runs.
+     */
+    public int getMaxPendingSends() {
+        return maxPendingSends;
+    }
+
+    public void setMaxPendingSends(int max) {
+        if (max < 1) throw new IllegalArgumentException();
+        this.maxPendingSends = max;
+    }
+
+    /**
+     * @return the time in microseconds that macro work may take per tick or
+     * frame before further sends are deferred, or 0 for no limit.
+     */
+    public int getTickBudgetMicros() {
+        return tickBudgetMicros;
+    }
+
+    public void setTickBudgetMicros(int micros) {
+        if (micros < 0) throw new IllegalArgumentException();
+        this.tickBudgetMicros = micros;
+    }
+
+    /**
+     * @return the number of recent chat messages searched by placeholders.
+     */
+    public int getChatHistoryDepth() {
+        return chatHistoryDepth;
+    }
+
+    public void setChatHistoryDepth(int depth) {
+        if (depth < 1) throw new IllegalArgumentException();
+        this.chatHistoryDepth = depth;
+    }
+
+    /**
+     * @return the distance in blocks searched for the block the player is
+     * looking at, or 0 to search to the render distance (minimum 384).
+     */
+    public int getLookRange() {
+        return lookRange;
+    }
+
+    public void setLookRange(int range) {
+        if (range < 0) throw new IllegalArgumentException();
+        this.lookRange = range;
+    }
+
+    /**
+     * @return {@code true} if the block the player is looking at may be a 
+     * fluid, {@code false} if fluids are looked through.
+     */
+    public boolean getLookFluids() {
+        return lookFluids;
+    }
+
+    public void setLookFluids(boolean lookFluids) {
+        this.lookFluids = lookFluids;
+    }
+
+    public int getSequenceTimeoutTicks() {
+        return sequenceTimeoutTicks;
+    }
+
+    public void setSequenceTimeoutTicks(int ticks) {
+        if (ticks < 1) throw new IllegalArgumentException();
+        this.sequenceTimeoutTicks = ticks;
+    }
     
     // Profile activation handling
 
@@ -151,10 +427,10 @@ public class Config {
 
     /**
      * Activates the {@link Profile} at {@code index}, if it is not already
-     * active.
+     * active, and prepares its messages for sending.
      */
     public void activateProfile(int index) {
-        profiles.getFirst().getMacros().forEach(Macro::stopRepeating);
+        profiles.getFirst().getMacros().forEach(Macro::clearScheduled);
         if (index != 0) {
             profiles.addFirst(profiles.remove(index));
             if (index == spDefault) spDefault = 0;
@@ -162,6 +438,7 @@ public class Config {
             if (index == mpDefault) mpDefault = 0;
             else if (index > mpDefault) mpDefault++;
         }
+        profiles.getFirst().prepare();
     }
 
     /**
@@ -237,7 +514,7 @@ public class Config {
 
     public static Config get() {
         if (instance == null) {
-            instance = Config.load();
+            setInstance(Config.load());
         }
         return instance;
     }
@@ -249,11 +526,17 @@ public class Config {
     }
 
     public static Config resetAndSave() {
-        instance = new Config();
+        setInstance(new Config());
         save();
         return instance;
     }
 
+    private static void setInstance(Config config) {
+        instance = config;
+        LINK_RATE_MAP.clear();
+        LINK_RATE_MAP.putAll(config.linkRates);
+    }
+
     // Load and save
 
     public static @NotNull Config load() {
@@ -281,6 +564,8 @@ public class Config {
 
     public static void save() {
         instance.cleanup();
+        instance.linkRates.clear();
+        instance.linkRates.putAll(LINK_RATE_MAP);
         try {
             if (!Files.isDirectory(DIR_PATH)) Files.createDirectories(DIR_PATH);
             Path file = DIR_PATH.resolve(FILE_NAME);
@@ -327,6 +612,72 @@ public class Config {
             boolean ratelimitSp = version >= 5
                     ? obj.get("ratelimitSp").getAsBoolean()
                     : false;
+            int sequenceTimeoutTicks = version >= 6
+                    ? obj.get("sequenceTimeoutTicks").getAsInt()
+                    : 20;
+            int ratelimitSustainedCount = version >= 7
+                    ? obj.get("ratelimitSustainedCount").getAsInt()
+                    : 0;
+            int ratelimitSustainedTicks = version >= 7
+                    ? obj.get("ratelimitSustainedTicks").getAsInt()
+                    : 0;
+            // Existing configs keep blocking
+            RatelimitMode ratelimitMode = version >= 8
+                    ? RatelimitMode.valueOf(obj.get("ratelimitMode").getAsString())
+                    : RatelimitMode.BLOCK;
+            int sendQueueSize = version >= 8
+                    ? obj.get("sendQueueSize").getAsInt()
+                    : 16;
+            SendQueue.OverflowPolicy sendQueuePolicy = version >= 8
+                    ? SendQueue.OverflowPolicy.valueOf(obj.get("sendQueuePolicy").getAsString())
+                    : SendQueue.OverflowPolicy.REJECT;
+            boolean ratelimitAdaptive = version >= 9
+                    ? obj.get("ratelimitAdaptive").getAsBoolean()
+                    : false;
+            List<String> throttlePatterns = new ArrayList<>();
+            Map<String, Double> linkRates = new HashMap<>();
+            if (version >= 9) {
+                for (JsonElement je : obj.getAsJsonArray("throttlePatterns")) {
+                    throttlePatterns.add(je.getAsString());
+                }
+                if (throttlePatterns.equals(OLD_THROTTLE_PATTERNS)) {
+                    throttlePatterns.clear();
+                    throttlePatterns.addAll(DEFAULT_THROTTLE_PATTERNS);
+                }
+                for (Map.Entry<String, JsonElement> entry : 
+                        obj.getAsJsonObject("linkRates").entrySet()) {
+                    linkRates.put(entry.getKey(), entry.getValue().getAsDouble());
+                }
+            } else {
+                throttlePatterns.addAll(DEFAULT_THROTTLE_PATTERNS);
+            }
+            boolean coalesceSends = version >= 10
+                    ? obj.get("coalesceSends").getAsBoolean()
+                    : false;
+            int coalesceWindowTicks = version >= 10
+                    ? obj.get("coalesceWindowTicks").getAsInt()
+                    : 20;
+            int maxRunsPerMacro = version >= 11
+                    ? obj.get("maxRunsPerMacro").getAsInt()
+                    : 8;
+            int maxActiveRuns = version >= 11
+                    ? obj.get("maxActiveRuns").getAsInt()
+                    : 64;
+            int maxPendingSends = version >= 11
+                    ? obj.get("maxPendingSends").getAsInt()
+                    : 4096;
+            int tickBudgetMicros = version >= 12
+                    ? obj.get("tickBudgetMicros").getAsInt()
+                    : 2000;
+            int chatHistoryDepth = version >= 13
+                    ? obj.get("chatHistoryDepth").getAsInt()
+                    : 50;
+            int lookRange = version >= 14
+                    ? obj.get("lookRange").getAsInt()
+                    : 0;
+            boolean lookFluids = version >= 14
+                    ? obj.get("lookFluids").getAsBoolean()
+                    : false;
 
             List<Profile> profiles = new ArrayList<>();
             for (JsonElement je : obj.getAsJsonArray("profiles")) {
@@ -353,10 +704,27 @@ public class Config {
             if (mpDefault < 0 || mpDefault >= profiles.size()) mpDefault = 0;
             if (ratelimitCount < 1) ratelimitCount = 4;
             if (ratelimitTicks < 1) ratelimitTicks = 20;
+            if (ratelimitSustainedCount < 0) ratelimitSustainedCount = 0;
+            if (ratelimitSustainedTicks < 0) ratelimitSustainedTicks = 0;
+            if (sendQueueSize < 1) sendQueueSize = 16;
+            if (coalesceWindowTicks < 0) coalesceWindowTicks = 20;
+            if (maxRunsPerMacro < 1) maxRunsPerMacro = 8;
+            if (maxActiveRuns < 1) maxActiveRuns = 64;
+            if (maxPendingSends < 1) maxPendingSends = 4096;
+            if (tickBudgetMicros < 0) tickBudgetMicros = 2000;
+            if (chatHistoryDepth < 1) chatHistoryDepth = 50;
+            if (lookRange < 0) lookRange = 0;
+            if (sequenceTimeoutTicks < 1) sequenceTimeoutTicks = 20;
+            linkRates.values().removeIf((rate) -> !(rate > 0));
 
             return new Config(profiles, spDefault, mpDefault, 
                     defaultConflictStrategy, defaultSendMode, 
-                    ratelimitCount, ratelimitTicks, ratelimitStrict, ratelimitSp);
+                    ratelimitCount, ratelimitTicks, ratelimitStrict, ratelimitSp,
+                    ratelimitSustainedCount, ratelimitSustainedTicks, 
+                    ratelimitMode, sendQueueSize, sendQueuePolicy, ratelimitAdaptive,
+                    throttlePatterns, linkRates, coalesceSends, coalesceWindowTicks, 
+                    maxRunsPerMacro, maxActiveRuns, maxPendingSends, tickBudgetMicros, 
+                    chatHistoryDepth, lookRange, lookFluids, sequenceTimeoutTicks);
         }
     }
 }
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.config;
+
+import com.google.common.collect.Multimap;
+import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.util.KeyState;
+
+import java.util.*;
+
+/**
+ * An immutable, compiled form of the keybind maps of a {@link Profile}, used
+ * to resolve key-presses without allocation or iteration of the backing
+ * {@link Multimap} instances.
+ *
+ * <p>Keys are stored as packed {@code int} codes (see
+ * {@link DispatchTable#pack}) in a sorted array. Each key owns a prefix trie
+ * of the sorted limit key codes of the {@link Keybind} chords using that key,
+ * so that the most specific chord matching the held keys can be found in time
+ * proportional to the chord length rather than the number of keybinds.</p>
+ *
+ * <p>Each trie node may own a group, and each group owns a contiguous range of
+ * slots, one per {@link Macro} using a {@link Keybind} of that chord. Equal 
+ * chords with different {@link Keybind.Role}s share a group.</p>
+ */
+public final class DispatchTable {
+    public static final int NONE = -1;
+    public static final DispatchTable EMPTY = new DispatchTable(new int[0],
+            new int[]{0}, new int[0], new int[0], new int[0], new int[0],
+            new int[]{0}, new int[0], new Macro[0], new Keybind[0], new byte[0]);
+
+    private static final int VALUE_MASK = 0xFFFFFF;
+    private static final InputConstants.Type[] TYPES = InputConstants.Type.values();
+    private static final Macro.ConflictStrategy[] STRATEGIES = Macro.ConflictStrategy.values();
+
+    // Sorted packed key codes. The root trie node of each key has the same
+    // index as the key.
+    private final int[] keys;
+    // Index of the first child of each node, and the node's depth and group
+    private final int[] nodeChildStart;
+    private final int[] nodeDepth;
+    private final int[] nodeGroup;
+    // Packed limit key code and node index of each child, sorted per node
+    private final int[] childCode;
+    private final int[] childNode;
+    // Index of the first slot of each group, and the number of non-AVOID slots
+    private final int[] groupStart;
+    private final int[] groupActive;
+    private final Macro[] slotMacro;
+    private final Keybind[] slotKeybind;
+    private final byte[] slotStrategy;
+
+    private DispatchTable(int[] keys, int[] nodeChildStart, int[] nodeDepth,
+                          int[] nodeGroup, int[] childCode, int[] childNode,
+                          int[] groupStart, int[] groupActive,
+                          Macro[] slotMacro, Keybind[] slotKeybind, byte[] slotStrategy) {
+        this.keys = keys;
+        this.nodeChildStart = nodeChildStart;
+        this.nodeDepth = nodeDepth;
+        this.nodeGroup = nodeGroup;
+        this.childCode = childCode;
+        this.childNode = childNode;
+        this.groupStart = groupStart;
+        this.groupActive = groupActive;
+        this.slotMacro = slotMacro;
+        this.slotKeybind = slotKeybind;
+        this.slotStrategy = slotStrategy;
+    }
+
+    /**
+     * Compiles the specified maps into a new {@link DispatchTable}, ignoring
+     * unbound keys. Slot order follows the iteration order of the maps.
+     */
+    static DispatchTable compile(Multimap<InputConstants.Key, Keybind> keybindMap,
+                                 Multimap<Keybind, Macro> macroMap) {
+        // Build a trie for each key
+        SortedMap<Integer, TrieBuilder> roots = new TreeMap<>();
+        List<List<Keybind>> groups = new ArrayList<>();
+        for (InputConstants.Key key : keybindMap.keySet()) {
+            int code = pack(key);
+            if (code == NONE) continue;
+            TrieBuilder root = roots.computeIfAbsent(code, (c) -> new TrieBuilder(0));
+            for (Keybind kb : keybindMap.get(key)) {
+                TrieBuilder node = root;
+                for (int limitCode : kb.getLimitCodes()) {
+                    int depth = node.depth + 1;
+                    node = node.children.computeIfAbsent(limitCode, (c) -> new TrieBuilder(depth));
+                }
+                if (node.group == NONE) {
+                    node.group = groups.size();
+                    groups.add(new ArrayList<>());
+                }
+                groups.get(node.group).add(kb);
+            }
+        }
+
+        // Flatten the tries breadth-first, so that the children of each node
+        // are contiguous
+        int[] keys = roots.keySet().stream().mapToInt(Integer::intValue).toArray();
+        List<TrieBuilder> nodes = new ArrayList<>(roots.values());
+        List<Integer> childCodes = new ArrayList<>();
+        List<Integer> childNodes = new ArrayList<>();
+        List<Integer> childStarts = new ArrayList<>();
+        for (int n = 0; n < nodes.size(); n++) {
+            childStarts.add(childCodes.size());
+            for (Map.Entry<Integer, TrieBuilder> child : nodes.get(n).children.entrySet()) {
+                childCodes.add(child.getKey());
+                childNodes.add(nodes.size());
+                nodes.add(child.getValue());
+            }
+        }
+        childStarts.add(childCodes.size());
+        int[] nodeChildStart = childStarts.stream().mapToInt(Integer::intValue).toArray();
+        int[] nodeDepth = new int[nodes.size()];
+        int[] nodeGroup = new int[nodes.size()];
+        for (int n = 0; n < nodes.size(); n++) {
+            nodeDepth[n] = nodes.get(n).depth;
+            nodeGroup[n] = nodes.get(n).group;
+        }
+
+        // Populate groups and slots
+        int numSlots = 0;
+        for (List<Keybind> group : groups) {
+            for (Keybind kb : group) numSlots += macroMap.get(kb).size();
+        }
+        int[] groupStart = new int[groups.size() + 1];
+        int[] groupActive = new int[groups.size()];
+        Macro[] slotMacro = new Macro[numSlots];
+        Keybind[] slotKeybind = new Keybind[numSlots];
+        byte[] slotStrategy = new byte[numSlots];
+        int s = 0;
+        for (int g = 0; g < groups.size(); g++) {
+            groupStart[g] = s;
+            for (Keybind kb : groups.get(g)) {
+                for (Macro macro : macroMap.get(kb)) {
+                    slotMacro[s] = macro;
+                    slotKeybind[s] = kb;
+                    slotStrategy[s++] = (byte)macro.getStrategy().ordinal();
+                    if (!macro.getStrategy().equals(Macro.ConflictStrategy.AVOID)) {
+                        groupActive[g]++;
+                    }
+                }
+            }
+        }
+        groupStart[groups.size()] = s;
+
+        return new DispatchTable(keys, nodeChildStart, nodeDepth, nodeGroup,
+                childCodes.stream().mapToInt(Integer::intValue).toArray(),
+                childNodes.stream().mapToInt(Integer::intValue).toArray(),
+                groupStart, groupActive, slotMacro, slotKeybind, slotStrategy);
+    }
+
+    private static class TrieBuilder {
+        final int depth;
+        final SortedMap<Integer, TrieBuilder> children = new TreeMap<>();
+        int group = NONE;
+
+        TrieBuilder(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * @return an {@code int} code uniquely identifying {@code key}, or
+     * {@link DispatchTable#NONE} if {@code key} is unbound.
+     */
+    public static int pack(InputConstants.Key key) {
+        if (key.equals(InputConstants.UNKNOWN)) return NONE;
+        return pack(key.getType(), key.getValue());
+    }
+
+    /**
+     * @return an {@code int} code uniquely identifying the key of the
+     * specified type and value.
+     */
+    public static int pack(InputConstants.Type type, int value) {
+        return (type.ordinal() << 24) | (value & VALUE_MASK);
+    }
+
+    /**
+     * @return the key type of a packed code.
+     */
+    public static InputConstants.Type typeOf(int code) {
+        return TYPES[code >>> 24];
+    }
+
+    /**
+     * @return the key value of a packed code.
+     */
+    public static int valueOf(int code) {
+        return code & VALUE_MASK;
+    }
+
+    // Lookup
+
+    /**
+     * Resolves the group to be triggered by a press of {@code key}, being the
+     * group of the longest chord whose limit keys are all held (see
+     * {@link KeyState}). If several chords of the same length match, the one
+     * with the lowest limit key codes is used.
+     * Groups having no macro enabled in {@code profile} are ignored, so that
+     * a disabled chord does not shadow a shorter enabled one.
+     * @param key the packed code of the pressed key.
+     * @param activeOnly whether to ignore groups having only
+     * {@link Macro.ConflictStrategy#AVOID} macros.
+     * @param profile the profile used to check whether macros are enabled.
+     * @return the group index, or {@link DispatchTable#NONE}.
+     */
+    public int resolve(int key, boolean activeOnly, Profile profile) {
+        int k = Arrays.binarySearch(keys, key);
+        if (k < 0) return NONE;
+        int node = search(k, 0, activeOnly, profile);
+        return node == NONE ? NONE : nodeGroup[node];
+    }
+
+    /**
+     * Depth-first search of the trie, following only children whose code is
+     * held. As both the held keys and the trie paths are sorted, each held
+     * key need only be checked against the children of a node once.
+     * @return the deepest matching node with a usable group, or 
+     * {@link DispatchTable#NONE}.
+     */
+    private int search(int node, int heldFrom, boolean activeOnly, Profile profile) {
+        int group = nodeGroup[node];
+        int best = (group != NONE && isUsable(group, activeOnly, profile)) ? node : NONE;
+        int start = nodeChildStart[node];
+        int end = nodeChildStart[node + 1];
+        if (start == end) return best;
+        for (int i = heldFrom, count = KeyState.heldCount(); i < count; i++) {
+            int c = Arrays.binarySearch(childCode, start, end, KeyState.held(i));
+            if (c < 0) continue;
+            int found = search(childNode[c], i + 1, activeOnly, profile);
+            if (found != NONE && (best == NONE || nodeDepth[found] > nodeDepth[best])) {
+                best = found;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return {@code true} if {@code group} has a slot that is enabled in
+     * {@code profile} (or toggles a group), and is not 
+     * {@link Macro.ConflictStrategy#AVOID} if {@code activeOnly} is set.
+     */
+    private boolean isUsable(int group, boolean activeOnly, Profile profile) {
+        if (activeOnly && groupActive[group] == 0) return false;
+        for (int slot = groupStart[group], end = groupStart[group + 1]; slot < end; slot++) {
+            if (activeOnly && STRATEGIES[slotStrategy[slot]] == Macro.ConflictStrategy.AVOID) {
+                continue;
+            }
+            if (slotKeybind[slot].getRole() == Keybind.Role.TOGGLE_GROUP 
+                    || profile.isEnabled(slotMacro[slot])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param key the packed code of the key.
+     * @param limitKeys the packed codes of the limit keys, in ascending order.
+     * @return the index of the group exactly matching {@code key} and
+     * {@code limitKeys}, or {@link DispatchTable#NONE}.
+     */
+    public int find(int key, int[] limitKeys) {
+        int k = Arrays.binarySearch(keys, key);
+        if (k < 0) return NONE;
+        int node = k;
+        for (int limitKey : limitKeys) {
+            int c = Arrays.binarySearch(childCode, nodeChildStart[node], 
+                    nodeChildStart[node + 1], limitKey);
+            if (c < 0) return NONE;
+            node = childNode[c];
+        }
+        return nodeGroup[node];
+    }
+
+    public int slotStart(int group) {
+        return groupStart[group];
+    }
+
+    public int slotEnd(int group) {
+        return groupStart[group + 1];
+    }
+
+    public Macro getMacro(int slot) {
+        return slotMacro[slot];
+    }
+
+    public Keybind getKeybind(int slot) {
+        return slotKeybind[slot];
+    }
+
+    public Macro.ConflictStrategy getStrategy(int slot) {
+        return STRATEGIES[slotStrategy[slot]];
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.config;
+
+import com.google.gson.*;
+import com.mojang.blaze3d.platform.InputConstants;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered list of {@link InputConstants.Key} instances which, pressed one
+ * after another, activate a {@link Macro}. 
+ * 
+ * <p>Sequences of fewer than {@link KeySequence#MIN_LENGTH} keys are 
+ * considered unbound.</p>
+ */
+public class KeySequence {
+    public final int version = 0;
+    
+    public static final int MIN_LENGTH = 2;
+
+    private transient List<InputConstants.Key> keys;
+    private List<String> keyNames;
+
+    public KeySequence() {
+        this(List.of());
+    }
+
+    public KeySequence(List<InputConstants.Key> keys) {
+        setKeys(keys);
+    }
+
+    /**
+     * @return an unmodifiable view of the key list.
+     */
+    public List<InputConstants.Key> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    void setKeys(List<InputConstants.Key> keys) {
+        this.keys = new ArrayList<>();
+        this.keyNames = new ArrayList<>();
+        for (InputConstants.Key key : keys) {
+            if (key.equals(InputConstants.UNKNOWN)) continue;
+            this.keys.add(key);
+            this.keyNames.add(key.getName());
+        }
+    }
+
+    /**
+     * @return {@code true} if this sequence is long enough to be used,
+     * {@code false} otherwise.
+     */
+    public boolean isBound() {
+        return keys.size() >= MIN_LENGTH;
+    }
+
+    // Deserialization
+
+    public static class Deserializer implements JsonDeserializer<KeySequence> {
+        @Override
+        public KeySequence deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext ctx)
+                throws JsonParseException {
+            JsonObject obj = json.getAsJsonObject();
+            int version = obj.get("version").getAsInt();
+
+            List<InputConstants.Key> keys = new ArrayList<>();
+            for (JsonElement je : obj.getAsJsonArray("keyNames")) {
+                keys.add(InputConstants.getKey(je.getAsString()));
+            }
+
+            return new KeySequence(keys);
+        }
+    }
+}
@@ -18,79 +18,174 @@ package dev.terminalmc.commandkeys.config;
 
 import com.google.gson.*;
 import com.mojang.blaze3d.platform.InputConstants;
-import net.minecraft.client.Minecraft;
+import dev.terminalmc.commandkeys.util.KeyState;
 
 import java.lang.reflect.Type;
-import java.util.Objects;
+import java.util.*;
 
 /**
- * Consists of two {@link InputConstants.Key} instances, allowing both single
- * and dual-key activation.
+ * Consists of a primary {@link InputConstants.Key} and any number of limit
+ * keys, allowing single-key activation and chords of two or more keys, and a
+ * {@link Role} determining the action taken by the owning {@link Macro}.
+ *
+ * <p>Limit keys are kept de-duplicated and sorted by packed code (see
+ * {@link DispatchTable#pack}), so that equal chords have equal lists.</p>
  */
 public class Keybind {
-    public final int version = 0;
+    public final int version = 2;
 
     private transient InputConstants.Key key;
     private String keyName;
-    private transient InputConstants.Key limitKey;
-    private String limitKeyName;
+    private transient List<InputConstants.Key> limitKeys;
+    private List<String> limitKeyNames;
+    
+    Role role;
+    public enum Role {
+        /**
+         * Activates the macro.
+         */
+        TRIGGER,
+        /**
+         * Activates the macro, cycling in reverse order.
+         */
+        REVERSE,
+        /**
+         * Stops the macro repeating.
+         */
+        STOP,
+        /**
+         * Enables or disables the group of the macro.
+         */
+        TOGGLE_GROUP,
+    }
 
     public Keybind() {
-        this.key = InputConstants.UNKNOWN;
-        this.keyName = key.getName();
-        this.limitKey = InputConstants.UNKNOWN;
-        this.limitKeyName = limitKey.getName();
+        this(Role.TRIGGER);
+    }
+
+    public Keybind(Role role) {
+        this(InputConstants.UNKNOWN, List.of(), role);
     }
 
     public Keybind(InputConstants.Key key, InputConstants.Key limitKey) {
+        this(key, List.of(limitKey), Role.TRIGGER);
+    }
+
+    public Keybind(InputConstants.Key key, Collection<InputConstants.Key> limitKeys) {
+        this(key, limitKeys, Role.TRIGGER);
+    }
+
+    public Keybind(InputConstants.Key key, Collection<InputConstants.Key> limitKeys, Role role) {
         this.key = key;
         this.keyName = key.getName();
-        this.limitKey = limitKey;
-        this.limitKeyName = limitKey.getName();
+        this.role = role;
+        setLimitKeys(limitKeys);
+    }
+
+    /**
+     * @return a new {@link Keybind} equal to this one, for use as a key of
+     * the {@link Profile} maps, which must not be mutated.
+     */
+    Keybind copy() {
+        return new Keybind(key, limitKeys, role);
     }
 
     public InputConstants.Key getKey() {
         return key;
     }
+
+    public Role getRole() {
+        return role;
+    }
     
     void setKey(InputConstants.Key key) {
         this.key = key;
         this.keyName = key.getName();
+        setLimitKeys(limitKeys);
     }
 
+    /**
+     * @return the first limit key, or {@link InputConstants#UNKNOWN} if there
+     * are none.
+     */
     public InputConstants.Key getLimitKey() {
-        return limitKey;
+        return limitKeys.isEmpty() ? InputConstants.UNKNOWN : limitKeys.getFirst();
+    }
+
+    /**
+     * @return an unmodifiable view of the sorted limit key list.
+     */
+    public List<InputConstants.Key> getLimitKeys() {
+        return Collections.unmodifiableList(limitKeys);
     }
 
     void setLimitKey(InputConstants.Key limitKey) {
-        this.limitKey = limitKey;
-        this.limitKeyName = limitKey.getName();
+        setLimitKeys(List.of(limitKey));
+    }
+
+    void setLimitKeys(Collection<InputConstants.Key> limitKeys) {
+        this.limitKeys = sortLimitKeys(key, limitKeys);
+        this.limitKeyNames = new ArrayList<>();
+        for (InputConstants.Key limitKey : this.limitKeys) limitKeyNames.add(limitKey.getName());
+    }
+
+    /**
+     * @return the packed codes of the limit keys, in ascending order.
+     */
+    int[] getLimitCodes() {
+        int[] codes = new int[limitKeys.size()];
+        for (int i = 0; i < codes.length; i++) codes[i] = DispatchTable.pack(limitKeys.get(i));
+        return codes;
     }
 
     public boolean isKeyDown() {
-        return !key.equals(InputConstants.UNKNOWN) && InputConstants.isKeyDown(
-                Minecraft.getInstance().getWindow().getWindow(), key.getValue());
+        return KeyState.isDown(key);
     }
 
+    /**
+     * @return {@code true} if there is at least one limit key and all limit 
+     * keys are down, {@code false} otherwise.
+     */
     public boolean isLimitKeyDown() {
-        return !limitKey.equals(InputConstants.UNKNOWN) && InputConstants.isKeyDown(
-                Minecraft.getInstance().getWindow().getWindow(), limitKey.getValue());
+        if (limitKeys.isEmpty()) return false;
+        for (InputConstants.Key limitKey : limitKeys) {
+            if (!KeyState.isDown(limitKey)) return false;
+        }
+        return true;
     }
     
     boolean isDown() {
-        return isKeyDown() && (limitKey.equals(InputConstants.UNKNOWN) || isLimitKeyDown());
+        return isKeyDown() && (limitKeys.isEmpty() || isLimitKeyDown());
+    }
+
+    /**
+     * @return a new list containing the distinct bound keys of 
+     * {@code limitKeys} other than {@code key}, sorted by packed code.
+     */
+    static List<InputConstants.Key> sortLimitKeys(InputConstants.Key key, 
+                                                  Collection<InputConstants.Key> limitKeys) {
+        List<InputConstants.Key> sorted = new ArrayList<>();
+        for (InputConstants.Key limitKey : limitKeys) {
+            if (!limitKey.equals(InputConstants.UNKNOWN) && !limitKey.equals(key)
+                    && !sorted.contains(limitKey)) {
+                sorted.add(limitKey);
+            }
+        }
+        sorted.sort(Comparator.comparingInt(DispatchTable::pack));
+        return sorted;
     }
 
     @Override
     public boolean equals(Object other) {
         if (this == other) return true;
         if (!(other instanceof Keybind keybind)) return false;
-        return key.equals(keybind.key) && limitKey.equals(keybind.limitKey);
+        return key.equals(keybind.key) && limitKeys.equals(keybind.limitKeys)
+                && role.equals(keybind.role);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(key, limitKey);
+        return Objects.hash(key, limitKeys, role);
     }
 
     // Deserialization
@@ -103,9 +198,19 @@ public class Keybind {
             int version = obj.get("version").getAsInt();
             
             InputConstants.Key key = InputConstants.getKey(obj.get("keyName").getAsString());
-            InputConstants.Key limitKey = InputConstants.getKey(obj.get("limitKeyName").getAsString());
-
-            return new Keybind(key, limitKey);
+            List<InputConstants.Key> limitKeys = new ArrayList<>();
+            if (version >= 1) {
+                for (JsonElement je : obj.getAsJsonArray("limitKeyNames")) {
+                    limitKeys.add(InputConstants.getKey(je.getAsString()));
+                }
+            } else {
+                limitKeys.add(InputConstants.getKey(obj.get("limitKeyName").getAsString()));
+            }
+            Role role = version >= 2
+                    ? Role.valueOf(obj.get("role").getAsString())
+                    : Role.TRIGGER;
+
+            return new Keybind(key, limitKeys, role);
         }
     }
 }
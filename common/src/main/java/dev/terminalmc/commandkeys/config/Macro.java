@@ -19,6 +19,8 @@ package dev.terminalmc.commandkeys.config;
 import com.google.gson.*;
 import com.mojang.blaze3d.platform.InputConstants;
 import dev.terminalmc.commandkeys.CommandKeys;
+import dev.terminalmc.commandkeys.util.MessageTemplate;
+import dev.terminalmc.commandkeys.util.PlaceholderUtil;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Type;
@@ -28,11 +30,19 @@ import java.util.List;
 import java.util.Random;
 
 /**
- * Consists of behavioral options, a primary and alternate {@link Keybind}, and 
- * a list of {@link Message} instances.
+ * Consists of behavioral options, a list of {@link Keybind} instances, an
+ * optional {@link KeySequence}, and a list of {@link Message} instances.
+ *
+ * <p>A macro may belong to a named group, allowing it to be enabled and 
+ * disabled together with the other macros of the group (see
+ * {@link Profile#setGroupEnabled}).</p>
+ *
+ * <p>The keybind list always contains at least one {@link Keybind.Role#TRIGGER}
+ * and one {@link Keybind.Role#REVERSE} keybind, used as the primary and 
+ * alternate keybinds.</p>
  */
 public class Macro {
-    public final int version = 4;
+    public final int version = 10;
 
     public static final Random RANDOM = new Random();
 
@@ -43,6 +53,12 @@ public class Macro {
     
     public boolean ignoreRatelimit;
 
+    String group;
+    /**
+     * Index of the group in the group list of the owning {@link Profile}.
+     */
+    transient int groupIndex = Profile.NO_GROUP;
+
     ConflictStrategy conflictStrategy;
     public enum ConflictStrategy {
         SUBMIT,
@@ -64,13 +80,72 @@ public class Macro {
      * Standard delay between messages when sending.
      */
     public int spaceTicks;
+
+    /**
+     * The unit of {@link Macro#spaceTicks} and {@link Message#delayTicks}.
+     */
+    DelayUnit delayUnit;
+    public enum DelayUnit {
+        TICKS,
+        MILLISECONDS,
+    }
+
+    /**
+     * The handling of {@link SendMode#REPEAT} runs which fall due while 
+     * messages cannot be sent, e.g. while the game is paused.
+     */
+    CatchUpPolicy catchUpPolicy;
+    public enum CatchUpPolicy {
+        /**
+         * Missed runs are skipped.
+         */
+        SKIP,
+        /**
+         * At most one of each message is sent in place of all missed runs.
+         */
+        ONCE,
+        /**
+         * All missed runs are made, up to the send budget.
+         */
+        ALL,
+    }
+    /**
+     * The handling of a {@link SendMode#SEND} trigger while a previous run of
+     * the macro is still sending.
+     */
+    RetriggerPolicy retriggerPolicy;
+    public enum RetriggerPolicy {
+        /**
+         * A new run is started alongside the previous runs, up to 
+         * {@link Config#getMaxRunsPerMacro()}.
+         */
+        PARALLEL,
+        /**
+         * The previous runs are cancelled and a new run is started.
+         */
+        RESTART,
+        /**
+         * The trigger is ignored.
+         */
+        IGNORE,
+        /**
+         * A single new run is started when the previous runs have finished.
+         * Further triggers in the meantime are merged into it.
+         */
+        QUEUE_ONE,
+    }
+    /**
+     * Whether a run is waiting for the previous runs to finish.
+     */
+    private transient boolean retriggerQueued = false;
+
     /**
      * Index of next message forwards when cycling.
      */
     public transient int cycleIndex;
 
-    Keybind keybind;
-    Keybind altKeybind;
+    final List<Keybind> keybinds;
+    KeySequence sequence;
 
     final List<Message> messages;
 
@@ -81,30 +156,41 @@ public class Macro {
         this.addToHistory = false;
         this.showHudMessage = false;
         this.ignoreRatelimit = false;
+        this.group = "";
         this.conflictStrategy = Config.get().defaultConflictStrategy;
         this.sendMode = Config.get().defaultSendMode;
         this.spaceTicks = 0;
+        this.delayUnit = DelayUnit.TICKS;
+        this.catchUpPolicy = CatchUpPolicy.ONCE;
+        this.retriggerPolicy = RetriggerPolicy.PARALLEL;
         this.cycleIndex = 0;
-        this.keybind = new Keybind();
-        this.altKeybind = new Keybind();
+        this.keybinds = new ArrayList<>(List.of(
+                new Keybind(Keybind.Role.TRIGGER), new Keybind(Keybind.Role.REVERSE)));
+        this.sequence = new KeySequence();
         this.messages = new ArrayList<>();
     }
 
     /**
-     * Not validated, only for use by self-validating deserializer.
+     * Not validated, only for use by self-validating deserializer and tests.
      */
-    private Macro(boolean addToHistory, boolean showHudMessage, boolean ignoreRatelimit,
-                  ConflictStrategy conflictStrategy, SendMode sendMode, int spaceTicks,
-                  Keybind keybind, Keybind altKeybind, List<Message> messages) {
+    Macro(boolean addToHistory, boolean showHudMessage, boolean ignoreRatelimit,
+                  String group, ConflictStrategy conflictStrategy, SendMode sendMode, int spaceTicks,
+                  DelayUnit delayUnit, CatchUpPolicy catchUpPolicy, 
+                  RetriggerPolicy retriggerPolicy, List<Keybind> keybinds, 
+                  KeySequence sequence, List<Message> messages) {
         this.addToHistory = addToHistory;
         this.showHudMessage = showHudMessage;
         this.ignoreRatelimit = ignoreRatelimit;
+        this.group = group;
         this.conflictStrategy = conflictStrategy;
         this.sendMode = sendMode;
         this.spaceTicks = spaceTicks;
+        this.delayUnit = delayUnit;
+        this.catchUpPolicy = catchUpPolicy;
+        this.retriggerPolicy = retriggerPolicy;
         this.cycleIndex = 0;
-        this.keybind = keybind;
-        this.altKeybind = altKeybind;
+        this.keybinds = keybinds;
+        this.sequence = sequence;
         this.messages = messages;
     }
 
@@ -116,6 +202,10 @@ public class Macro {
         return showHudMessage;
     }
 
+    public String getGroup() {
+        return group;
+    }
+
     public ConflictStrategy getStrategy() {
         return conflictStrategy;
     }
@@ -124,12 +214,50 @@ public class Macro {
         return sendMode;
     }
 
+    public DelayUnit getDelayUnit() {
+        return delayUnit;
+    }
+
+    public CatchUpPolicy getCatchUpPolicy() {
+        return catchUpPolicy;
+    }
+
+    public RetriggerPolicy getRetriggerPolicy() {
+        return retriggerPolicy;
+    }
+
+    /**
+     * @return an unmodifiable view of the keybind list.
+     */
+    public List<Keybind> getKeybinds() {
+        return Collections.unmodifiableList(keybinds);
+    }
+
+    /**
+     * @return the primary keybind, being the first 
+     * {@link Keybind.Role#TRIGGER} keybind.
+     */
     public Keybind getKeybind() {
-        return keybind;
+        return getKeybind(Keybind.Role.TRIGGER);
     }
 
+    /**
+     * @return the alternate keybind, being the first 
+     * {@link Keybind.Role#REVERSE} keybind.
+     */
     public Keybind getAltKeybind() {
-        return altKeybind;
+        return getKeybind(Keybind.Role.REVERSE);
+    }
+
+    private Keybind getKeybind(Keybind.Role role) {
+        for (Keybind kb : keybinds) {
+            if (kb.role.equals(role)) return kb;
+        }
+        throw new IllegalStateException("No keybind with role " + role);
+    }
+
+    public KeySequence getSequence() {
+        return sequence;
     }
 
     /**
@@ -137,15 +265,31 @@ public class Macro {
      * by this macro, {@code false} otherwise.
      */
     public boolean usesKeybind(Keybind keybind) {
-        return (keybind == this.keybind) || (usesAltKeybind() && keybind == this.altKeybind);
+        return ownsKeybind(keybind) && isActive(keybind);
     }
 
     /**
-     * @return {@code true} if this macro is using its alternate keybind, 
-     * {@code false} otherwise.
+     * @return {@code true} if {@code keybind} is in the keybind list of this
+     * macro, by identity, {@code false} otherwise.
+     */
+    boolean ownsKeybind(Keybind keybind) {
+        for (Keybind kb : keybinds) {
+            if (kb == keybind) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the role of {@code keybind} has an effect in the
+     * current {@link SendMode}, {@code false} otherwise.
      */
-    public boolean usesAltKeybind() {
-        return sendMode.equals(SendMode.CYCLE);
+    public boolean isActive(Keybind keybind) {
+        return switch(keybind.role) {
+            case TRIGGER -> true;
+            case REVERSE -> sendMode.equals(SendMode.CYCLE);
+            case STOP -> sendMode.equals(SendMode.REPEAT);
+            case TOGGLE_GROUP -> !group.isBlank();
+        };
     }
 
     /**
@@ -160,7 +304,27 @@ public class Macro {
     }
 
     public void setMessage(int index, String str) {
-        this.messages.get(index).string = str;
+        this.messages.get(index).setString(str);
+    }
+
+    /**
+     * Parses all messages and compiles the regex arguments of their 
+     * placeholders, as they will be sent in the current mode.
+     * @return {@code true} if all regex arguments are valid, {@code false}
+     * otherwise.
+     */
+    boolean prepare() {
+        boolean valid = true;
+        for (Message msg : messages) {
+            if (sendMode.equals(SendMode.CYCLE)) {
+                for (MessageTemplate part : msg.getParts()) {
+                    valid &= PlaceholderUtil.prepare(part);
+                }
+            } else {
+                valid &= PlaceholderUtil.prepare(msg.getTemplate());
+            }
+        }
+        return valid;
     }
 
     public void removeMessage(int index) {
@@ -181,117 +345,192 @@ public class Macro {
     // Activation
 
     public void trigger(@Nullable Keybind trigger) {
-        if (hasRepeating()) {
+        Keybind.Role role = trigger == null ? Keybind.Role.TRIGGER : trigger.role;
+        // Group toggling is handled by the owning profile
+        if (role.equals(Keybind.Role.TOGGLE_GROUP)) return;
+        if (role.equals(Keybind.Role.STOP) || hasRepeating()) {
             stopRepeating();
             return;
         }
 
         switch(sendMode) {
             case SEND -> {
-                // If using standard delay, doesn't apply to first
-                boolean standardDelay = spaceTicks != 0;
-                int cumulativeDelay = standardDelay ? -spaceTicks : 0;
-                for (Message msg : messages) {
-                    cumulativeDelay += standardDelay ? spaceTicks : msg.delayTicks;
-                    schedule(cumulativeDelay, -1, msg.string, 
-                            historyEnabled, hudMessageEnabled);
-                }
+                if (!messages.isEmpty()) retrigger();
             }
             case TYPE -> {
                 if (!messages.isEmpty()) {
-                    CommandKeys.type(messages.getFirst().string);
+                    CommandKeys.type(messages.getFirst().getTemplate());
                 }
             }
             case CYCLE -> {
-                if (altKeybind.equals(trigger)) {
+                if (role.equals(Keybind.Role.REVERSE)) {
                     if (cycleIndex == 0) cycleIndex = messages.size() - 1;
                     else cycleIndex--;
                 } else {
                     if (++cycleIndex >= messages.size()) cycleIndex = 0;
                 }
                 // Allow spacer blank messages, and multiple messages per press.
-                for (String msg : messages.get(cycleIndex).string.split(",,")) {
-                    if (!msg.isBlank()) {
-                        CommandKeys.send(msg, historyEnabled, hudMessageEnabled);
-                    }
+                for (MessageTemplate msg : messages.get(cycleIndex).getParts()) {
+                    send(msg, this, true);
                 }
             }
             case RANDOM -> {
                 if (!messages.isEmpty()) {
                     Message msg = messages.get(RANDOM.nextInt(messages.size()));
-                    if (!msg.string.isBlank()) {
-                        CommandKeys.send(msg.string, historyEnabled, hudMessageEnabled);
+                    if (!msg.getString().isBlank()) {
+                        send(msg.getTemplate(), this, true);
                     }
                 }
             }
             case REPEAT -> {
-                int cumulativeDelay = 0;
-                for (Message msg : messages) {
-                    cumulativeDelay += msg.delayTicks;
-                    schedule(cumulativeDelay, spaceTicks, msg.string, 
-                            historyEnabled, hudMessageEnabled);
+                if (!messages.isEmpty()) startRun(true);
+            }
+        }
+    }
+
+    /**
+     * Submits {@code message} via {@link CommandKeys#submit}.
+     * @param source the identity of the sender, being this macro or one of 
+     * its runs.
+     * @param priority whether the message results directly from user input.
+     */
+    void send(MessageTemplate message, Object source, boolean priority) {
+        CommandKeys.submit(message, historyEnabled, hudMessageEnabled, ignoreRatelimit, 
+                source, priority);
+    }
+
+    // Runs
+
+    /**
+     * The active {@link MacroRun} instances of this macro.
+     */
+    private transient final List<MacroRun> runs = new ArrayList<>();
+
+    /**
+     * @return an unmodifiable view of the active {@link MacroRun} list.
+     */
+    public List<MacroRun> getRuns() {
+        return Collections.unmodifiableList(runs);
+    }
+
+    void removeRun(MacroRun run) {
+        runs.remove(run);
+        if (retriggerQueued && !run.isRepeating() && !hasSending()) {
+            retriggerQueued = false;
+            startRun(false);
+        }
+    }
+
+    /**
+     * @return {@code true} if this macro has a non-repeating run, 
+     * {@code false} otherwise.
+     */
+    private boolean hasSending() {
+        for (MacroRun run : runs) {
+            if (!run.isRepeating()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts a non-repeating run according to the {@link RetriggerPolicy}
+     * of this macro.
+     */
+    private void retrigger() {
+        if (hasSending()) {
+            switch(retriggerPolicy) {
+                case PARALLEL -> {
+                    int count = 0;
+                    for (MacroRun run : runs) {
+                        if (!run.isRepeating()) count++;
+                    }
+                    if (count >= Config.get().getMaxRunsPerMacro()) {
+                        Admission.refused();
+                        CommandKeys.onRunRefused(this);
+                        return;
+                    }
+                }
+                case RESTART -> {
+                    for (int i = runs.size() - 1; i >= 0; i--) {
+                        if (!runs.get(i).isRepeating()) runs.get(i).cancel();
+                    }
+                    Admission.restarted();
+                }
+                case IGNORE -> {
+                    Admission.ignored();
+                    return;
+                }
+                case QUEUE_ONE -> {
+                    retriggerQueued = true;
+                    Admission.queued();
+                    return;
                 }
             }
         }
+        startRun(false);
     }
 
-    // Scheduling
+    /**
+     * Starts a new run if admitted by {@link Admission}.
+     */
+    private void startRun(boolean repeating) {
+        if (messages.isEmpty()) return;
+        if (Admission.admit(repeating ? 0 : messages.size())) {
+            runs.add(new MacroRun(this, repeating));
+        } else {
+            CommandKeys.onRunRefused(this);
+        }
+    }
 
-    private transient final List<ScheduledMessage> scheduledMessages = new ArrayList<>();
-    
+    /**
+     * Cancels all runs, including any queued run.
+     */
     public void clearScheduled() {
-        scheduledMessages.clear();
+        retriggerQueued = false;
+        while (!runs.isEmpty()) runs.getLast().cancel();
     }
 
     public boolean hasRepeating() {
-        for (ScheduledMessage msg : scheduledMessages) {
-            if (msg.repeatDelay != -1) return true;
+        for (MacroRun run : runs) {
+            if (run.isRepeating()) return true;
         }
         return false;
     }
 
     public void stopRepeating() {
-        scheduledMessages.removeIf((msg) -> msg.repeatDelay != -1);
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            if (runs.get(i).isRepeating()) runs.get(i).cancel();
+        }
     }
 
-    private void schedule(int initialDelay, int repeatDelay, String message,
-                          boolean addToHistory, boolean showHudMsg) {
-        scheduledMessages.add(new ScheduledMessage(initialDelay, repeatDelay, message,
-                addToHistory, showHudMsg));
+    public void pauseRuns() {
+        runs.forEach(MacroRun::pause);
     }
 
-    public void tick() {
-        scheduledMessages.removeIf(ScheduledMessage::tick);
+    public void resumeRuns() {
+        runs.forEach(MacroRun::resume);
     }
 
-    private static class ScheduledMessage {
-        private int delay;
-        final int repeatDelay;
-        final String message;
-        final boolean showHudMessage;
-        final boolean addToHistory;
-
-        public ScheduledMessage(int initialDelay, int repeatDelay, String message,
-                                boolean showHudMessage, boolean addToHistory) {
-            this.delay = initialDelay;
-            this.repeatDelay = repeatDelay;
-            this.message = message;
-            this.showHudMessage = showHudMessage;
-            this.addToHistory = addToHistory;
-        }
+    /**
+     * Makes up for repeating messages which fell due while messages could 
+     * not be sent, according to the {@link CatchUpPolicy} of this macro. 
+     * Called when sending becomes possible again.
+     */
+    public void catchUp() {
+        for (int i = runs.size() - 1; i >= 0; i--) runs.get(i).catchUp();
+    }
 
-        /**
-         * @return {@code true} if this {@link ScheduledMessage} has finished
-         * ticking, {@code false} otherwise.
-         */
-        private boolean tick() {
-            if (--delay <= 0) {
-                CommandKeys.send(message, showHudMessage, addToHistory);
-                if (repeatDelay != -1) delay = repeatDelay;
-                else return true;
-            }
-            return false;
-        }
+    /**
+     * @return the number of messages to send in place of {@code missed}
+     * messages, being the number of most recent missed messages to send.
+     */
+    int catchUpRuns(long missed) {
+        if (missed <= 0) return 0;
+        return switch(catchUpPolicy) {
+            case SKIP -> 0;
+            case ONCE -> (int)Math.min(missed, messages.size());
+            case ALL -> (int)Math.min(missed, Math.max(1, CommandKeys.getSendBudget()));
+        };
     }
 
     // Deserialization
@@ -306,6 +545,7 @@ public class Macro {
             boolean addToHistory = version >= 3 ? obj.get("addToHistory").getAsBoolean() : false;
             boolean showHudMessage = version >= 3 ? obj.get("showHudMessage").getAsBoolean() : false;
             boolean ignoreRatelimit = version >= 4 ? obj.get("ignoreRatelimit").getAsBoolean() : false;
+            String group = version >= 7 ? obj.get("group").getAsString() : "";
 
             ConflictStrategy conflictStrategy = version >= 3
                     ? ConflictStrategy.valueOf(obj.get("conflictStrategy").getAsString())
@@ -315,19 +555,40 @@ public class Macro {
                     : getSendMode(obj.get("sendStrategy").getAsString());
 
             int spaceTicks = version >= 1 ? obj.get("spaceTicks").getAsInt() : 0;
+            DelayUnit delayUnit = version >= 8 
+                    ? DelayUnit.valueOf(obj.get("delayUnit").getAsString()) 
+                    : DelayUnit.TICKS;
+            CatchUpPolicy catchUpPolicy = version >= 9
+                    ? CatchUpPolicy.valueOf(obj.get("catchUpPolicy").getAsString())
+                    : CatchUpPolicy.ONCE;
+            RetriggerPolicy retriggerPolicy = version >= 10
+                    ? RetriggerPolicy.valueOf(obj.get("retriggerPolicy").getAsString())
+                    : RetriggerPolicy.PARALLEL;
             
-            Keybind keybind = version >= 4
-                    ? ctx.deserialize(obj.get("keybind"), Keybind.class)
-                    : version == 3 
-                        ? new Keybind(
-                            InputConstants.getKey(obj.get("keyName").getAsString()), 
-                            InputConstants.getKey(obj.get("limitKeyName").getAsString()))
-                        : new Keybind(
-                            InputConstants.getKey(obj.getAsJsonObject("key").get("name").getAsString()),
-                            InputConstants.getKey(obj.getAsJsonObject("limitKey").get("name").getAsString()));
-            Keybind altKeybind = version >= 4 
-                    ? ctx.deserialize(obj.get("altKeybind"), Keybind.class) 
-                    : new Keybind();
+            List<Keybind> keybinds = new ArrayList<>();
+            if (version >= 6) {
+                for (JsonElement je : obj.getAsJsonArray("keybinds")) {
+                    keybinds.add(ctx.deserialize(je, Keybind.class));
+                }
+            } else {
+                keybinds.add(version >= 4
+                        ? ctx.deserialize(obj.get("keybind"), Keybind.class)
+                        : version == 3
+                            ? new Keybind(
+                                InputConstants.getKey(obj.get("keyName").getAsString()),
+                                InputConstants.getKey(obj.get("limitKeyName").getAsString()))
+                            : new Keybind(
+                                InputConstants.getKey(obj.getAsJsonObject("key").get("name").getAsString()),
+                                InputConstants.getKey(obj.getAsJsonObject("limitKey").get("name").getAsString())));
+                Keybind altKeybind = version >= 4
+                        ? ctx.deserialize(obj.get("altKeybind"), Keybind.class)
+                        : new Keybind();
+                altKeybind.role = Keybind.Role.REVERSE;
+                keybinds.add(altKeybind);
+            }
+            KeySequence sequence = version >= 5
+                    ? ctx.deserialize(obj.get("sequence"), KeySequence.class)
+                    : new KeySequence();
             
             List<Message> messages = new ArrayList<>();
             for (JsonElement je : obj.getAsJsonArray("messages")) {
@@ -339,9 +600,15 @@ public class Macro {
 
             // Validate
             if (spaceTicks < 0) throw new JsonParseException("Macro Error: spaceTicks < 0");
+            for (Keybind.Role role : List.of(Keybind.Role.TRIGGER, Keybind.Role.REVERSE)) {
+                if (keybinds.stream().noneMatch((kb) -> kb.role.equals(role))) {
+                    keybinds.add(new Keybind(role));
+                }
+            }
 
-            return new Macro(addToHistory, showHudMessage, ignoreRatelimit, conflictStrategy,
-                    sendMode, spaceTicks, keybind, altKeybind, messages);
+            return new Macro(addToHistory, showHudMessage, ignoreRatelimit, group.strip(), conflictStrategy,
+                    sendMode, spaceTicks, delayUnit, catchUpPolicy, retriggerPolicy, keybinds, 
+                    sequence, messages);
         }
 
         public static ConflictStrategy getConflictStrategy(String str) {
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.config;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+import dev.terminalmc.commandkeys.util.MillisScheduler;
+import dev.terminalmc.commandkeys.util.TimingWheel;
+
+import java.util.List;
+
+/**
+ * A single execution of a {@link Macro} in {@link Macro.SendMode#SEND} or 
+ * {@link Macro.SendMode#REPEAT} mode, holding a cursor over the messages of
+ * the macro rather than one scheduled object per message, so that a run uses
+ * constant memory regardless of the number of messages.
+ *
+ * <p>The cursor consists of the index of the next message, the time at which
+ * it is due, and for repeating runs the start time of the current cycle. Only
+ * one wake-up is scheduled at a time, for the next due message.</p>
+ *
+ * <p>Times are in ticks or nanoseconds according to the 
+ * {@link Macro.DelayUnit} of the macro when the run was started. Non-repeating
+ * tick runs use {@link CommandKeys#scheduler}, which pauses with the game.
+ * Repeating tick runs use {@link CommandKeys#repeatScheduler}, which does
+ * not, so that their phase is kept; wake-ups which occur while messages
+ * cannot be sent are deferred until {@link MacroRun#catchUp}.</p>
+ */
+public class MacroRun {
+    private final Macro macro;
+    private final boolean repeating;
+    private final Macro.DelayUnit unit;
+    private final TickTimer timer = new TickTimer();
+    private MillisTask task;
+
+    private int index = 0;
+    // Number of messages yet to be sent by a non-repeating run
+    private int unsent;
+    private long due;
+    private long cycleStart;
+
+    private boolean paused = false;
+    private boolean cancelled = false;
+    private boolean deferred = false;
+    // Whether due messages were held back because the tick budget was spent
+    private boolean postponed = false;
+    // Time remaining until the next message when paused
+    private long remaining;
+
+    MacroRun(Macro macro, boolean repeating) {
+        this.macro = macro;
+        this.repeating = repeating;
+        this.unit = macro.delayUnit;
+        this.unsent = repeating ? 0 : macro.messages.size();
+        this.cycleStart = now();
+        this.due = cycleStart + (!repeating && isStandardDelay() ? 0 : delay(0));
+        schedule();
+    }
+
+    public Macro getMacro() {
+        return macro;
+    }
+
+    public boolean isRepeating() {
+        return repeating;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the index of the next message to be sent.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Stops the run without advancing the cursor. The time remaining until
+     * the next message is kept.
+     */
+    public void pause() {
+        if (paused || cancelled) return;
+        paused = true;
+        remaining = Math.max(0, due - now());
+        unschedule();
+    }
+
+    /**
+     * Continues a paused run, shifting all following messages by the length
+     * of the pause.
+     */
+    public void resume() {
+        if (!paused || cancelled) return;
+        paused = false;
+        long shift = now() + remaining - due;
+        due += shift;
+        cycleStart += shift;
+        schedule();
+    }
+
+    /**
+     * Stops the run permanently and removes it from the macro, discarding 
+     * any of its messages not yet sent.
+     */
+    public void cancel() {
+        if (cancelled) return;
+        CommandKeys.discard(this);
+        finish();
+    }
+
+    /**
+     * Stops the run permanently and removes it from the macro, leaving any
+     * of its messages already submitted to be sent.
+     */
+    private void finish() {
+        if (cancelled) return;
+        cancelled = true;
+        unschedule();
+        Admission.release(unsent);
+        unsent = 0;
+        macro.removeRun(this);
+    }
+
+    /**
+     * Makes up for messages of a repeating run which fell due while messages
+     * could not be sent, according to the {@link Macro.CatchUpPolicy} of the
+     * macro.
+     */
+    void catchUp() {
+        if (!deferred || paused || cancelled) return;
+        deferred = false;
+        postponed = false;
+        advance();
+    }
+
+    // Cursor
+
+    private long now() {
+        return switch(unit) {
+            case TICKS -> wheel().now();
+            case MILLISECONDS -> System.nanoTime();
+        };
+    }
+
+    private TimingWheel wheel() {
+        return repeating ? CommandKeys.repeatScheduler : CommandKeys.scheduler;
+    }
+
+    private long scale() {
+        return unit.equals(Macro.DelayUnit.MILLISECONDS) ? 1_000_000L : 1L;
+    }
+
+    private boolean isStandardDelay() {
+        return macro.spaceTicks != 0;
+    }
+
+    /**
+     * @return the delay before the message at {@code index}, scaled to the
+     * time unit of this run.
+     */
+    private long delay(int index) {
+        List<Message> messages = macro.messages;
+        if (index >= messages.size()) return 0;
+        return (!repeating && isStandardDelay() 
+                ? macro.spaceTicks : messages.get(index).delayTicks) * scale();
+    }
+
+    private long period() {
+        return Math.max(1, macro.spaceTicks) * scale();
+    }
+
+    /**
+     * Moves the cursor to the next message.
+     * @return {@code false} if the run has finished, {@code true} otherwise.
+     */
+    private boolean step() {
+        if (++index < macro.messages.size()) {
+            due += delay(index);
+            return true;
+        }
+        if (!repeating || macro.messages.isEmpty()) return false;
+        index = 0;
+        cycleStart += period();
+        due = cycleStart + delay(0);
+        return true;
+    }
+
+    /**
+     * Sends all messages which are due, then schedules the next wake-up. If
+     * the {@link CommandKeys#tickBudget} is spent, the remaining due messages
+     * are postponed to the next tick or frame rather than treated as missed.
+     */
+    private void advance() {
+        List<Message> messages = macro.messages;
+        long now = now();
+        if (repeating && !messages.isEmpty() && !postponed) {
+            // Messages due more than the tolerance before now were missed
+            long tolerance = unit.equals(Macro.DelayUnit.MILLISECONDS) ? period() - 1 : 0;
+            long limit = now - tolerance;
+            int start = index;
+            long missed = 0;
+            // Skip whole missed cycles arithmetically
+            if (limit - due > period()) {
+                long cycles = (limit - due) / period() - 1;
+                cycleStart += cycles * period();
+                due += cycles * period();
+                missed += cycles * messages.size();
+            }
+            while (due < limit) {
+                missed++;
+                step();
+            }
+            int runs = macro.catchUpRuns(missed);
+            for (long i = missed - runs; i < missed; i++) {
+                send(messages.get((int)((start + i) % messages.size())));
+            }
+        }
+        postponed = false;
+        while (due <= now) {
+            if (index >= messages.size()) break;
+            if (CommandKeys.tickBudget.isSpent()) {
+                CommandKeys.tickBudget.defer();
+                postponed = true;
+                break;
+            }
+            send(messages.get(index));
+            if (cancelled) return;
+            if (!step()) {
+                finish();
+                return;
+            }
+        }
+        if (index >= messages.size()) {
+            finish();
+            return;
+        }
+        schedule();
+    }
+
+    /**
+     * Sends {@code message} in the lane of this run. Runs of repeating
+     * macros are background work, others result from user input.
+     */
+    private void send(Message message) {
+        if (unsent > 0) {
+            unsent--;
+            Admission.sent();
+        }
+        macro.send(message.getTemplate(), this, !repeating);
+    }
+
+    // Scheduling
+
+    private void schedule() {
+        switch(unit) {
+            case TICKS -> wheel().schedule(timer, due - now());
+            case MILLISECONDS -> {
+                // A task can be reused once it has run
+                if (task == null) task = new MillisTask();
+                MillisScheduler.scheduleAt(task, due);
+            }
+        }
+    }
+
+    private void unschedule() {
+        wheel().cancel(timer);
+        if (task != null) MillisScheduler.cancel(task);
+        task = null;
+    }
+
+    private class TickTimer extends TimingWheel.Timer {
+        @Override
+        protected void expire() {
+            if (repeating && !CommandKeys.canSend()) {
+                // Resumed by catchUp()
+                deferred = true;
+                return;
+            }
+            advance();
+        }
+    }
+
+    private class MillisTask extends MillisScheduler.Task {
+        @Override
+        protected void run() {
+            if (task == this) advance();
+        }
+    }
+}
@@ -18,17 +18,24 @@ package dev.terminalmc.commandkeys.config;
 
 import com.google.gson.*;
 import dev.terminalmc.commandkeys.CommandKeys;
+import dev.terminalmc.commandkeys.util.MessageTemplate;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Message {
     public final int version = 1;
 
     private boolean enabled; // v1 parity
-    public String string;
+    private String string;
     public int delayTicks;
 
+    // Parsed forms of string, created on first use
+    private transient @Nullable MessageTemplate template;
+    private transient @Nullable List<MessageTemplate> parts;
+
     /**
      * Creates a default instance.
      */
@@ -47,6 +54,42 @@ public class Message {
         this.delayTicks = delayTicks;
     }
 
+    public String getString() {
+        return string;
+    }
+
+    /**
+     * Sets the message, discarding its parsed forms.
+     */
+    void setString(String string) {
+        this.string = string;
+        this.template = null;
+        this.parts = null;
+    }
+
+    /**
+     * @return the message, parsed for placeholders.
+     */
+    public MessageTemplate getTemplate() {
+        if (template == null) template = MessageTemplate.of(string);
+        return template;
+    }
+
+    /**
+     * @return the non-blank parts of the message separated by {@code ,,}, 
+     * each parsed for placeholders.
+     */
+    public List<MessageTemplate> getParts() {
+        if (parts == null) {
+            List<MessageTemplate> list = new ArrayList<>();
+            for (String part : string.split(",,")) {
+                if (!part.isBlank()) list.add(MessageTemplate.of(part));
+            }
+            parts = List.copyOf(list);
+        }
+        return parts;
+    }
+
     public static class Deserializer implements JsonDeserializer<Message> {
         @Override
         public @Nullable Message deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext ctx)
@@ -20,6 +20,8 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.gson.*;
 import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.CommandKeys;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Type;
 import java.util.*;
@@ -35,17 +37,36 @@ import java.util.*;
  *
  * <p>A pair of transient {@link Multimap} instances ({@link Profile#keybindMap}
  * and {@link Profile#macroMap}) are maintained to improve macro lookup time.
- * </p>
+ * These are compiled on demand into a {@link DispatchTable} for use on the
+ * input path. The {@link KeySequence} instances of the macros are similarly
+ * compiled into a {@link SequenceAutomaton}.</p>
+ *
+ * <p>Macros may be assigned to named groups. Each group name is given an 
+ * index on first use, and a transient {@link BitSet} of disabled group indices
+ * is checked when macros are activated, so that a group can be enabled or
+ * disabled without changing the maps or the config file. Unused groups are
+ * dropped whenever the maps are rebuilt.</p>
  */
 public class Profile {
     public final int version = 3;
     
     public static final Map<String, Profile> LINK_PROFILE_MAP = new HashMap<>();
+    /**
+     * The learned sustained send rate of each link, in messages per second.
+     * Persisted by {@link Config}, and maintained independently of profile
+     * links so that a rate learned while using a default profile is kept.
+     */
+    public static final Map<String, Double> LINK_RATE_MAP = new HashMap<>();
+    public static final int NO_GROUP = -1;
     
     public transient final Multimap<InputConstants.Key, Keybind> keybindMap 
             = LinkedHashMultimap.create();
     public transient final Multimap<Keybind, Macro> macroMap 
             = LinkedHashMultimap.create();
+    private transient @Nullable DispatchTable dispatchTable;
+    private transient @Nullable SequenceAutomaton sequenceAutomaton;
+    private transient final List<String> groups = new ArrayList<>();
+    private transient final BitSet disabledGroups = new BitSet();
 
     // Profile details
     public String name;
@@ -167,6 +188,22 @@ public class Profile {
         return Collections.unmodifiableList(macros);
     }
     
+    /**
+     * Prepares the messages of all macros for sending (see 
+     * {@link Macro#prepare}), so that invalid placeholders are reported when
+     * the profile is activated rather than when each message is sent.
+     */
+    void prepare() {
+        int invalid = 0;
+        for (Macro macro : macros) {
+            if (!macro.prepare()) invalid++;
+        }
+        if (invalid > 0) {
+            CommandKeys.LOG.warn("Profile '{}' has {} macros with invalid placeholder regex", 
+                    name, invalid);
+        }
+    }
+
     public void addMacro(Macro macro) {
         macros.add(macro);
         addToMaps(macro);
@@ -186,82 +223,280 @@ public class Profile {
     
     public void removeMacro(Macro macro) {
         macros.remove(macro);
-        removeFromMaps(macro);
+        if (macro.groupIndex == NO_GROUP) {
+            removeFromMaps(macro);
+        } else {
+            rebuildMaps();
+        }
     }
     
     // Macro map management
 
     /**
-     * Adds the keybind key and, if appropriate, the alternate keybind key of 
-     * {@code macro} to {@link Profile#keybindMap}, and adds the macro to
-     * {@link Profile#macroMap}. 
+     * Adds the active keybinds of {@code macro} to {@link Profile#keybindMap},
+     * and adds the macro to {@link Profile#macroMap}. 
      */
     public void addToMaps(Macro macro) {
-        keybindMap.put(macro.keybind.getKey(), macro.keybind);
-        macroMap.put(macro.keybind, macro);
-        if (macro.usesAltKeybind()) {
-            keybindMap.put(macro.altKeybind.getKey(), macro.altKeybind);
-            macroMap.put(macro.altKeybind, macro);
+        macro.groupIndex = groupIndex(macro.group);
+        for (Keybind keybind : macro.keybinds) {
+            if (macro.isActive(keybind)) addToMaps(macro, keybind);
         }
+        dispatchTable = null;
+        sequenceAutomaton = null;
     }
 
     /**
-     * Removes the keybind key and, if appropriate, the alternate keybind key of 
-     * {@code macro} from {@link Profile#keybindMap}, and removes the macro from
+     * Removes the active keybinds of {@code macro} from 
+     * {@link Profile#keybindMap}, and removes the macro from 
      * {@link Profile#macroMap}. 
      */
     public void removeFromMaps(Macro macro) {
-        keybindMap.remove(macro.keybind.getKey(), macro.keybind);
-        macroMap.remove(macro.keybind, macro);
-        if (macro.usesAltKeybind()) {
-            keybindMap.remove(macro.altKeybind.getKey(), macro.altKeybind);
-            macroMap.remove(macro.altKeybind, macro);
+        for (Keybind keybind : macro.keybinds) {
+            if (macro.isActive(keybind)) removeFromMaps(macro, keybind);
         }
+        dispatchTable = null;
+        sequenceAutomaton = null;
+    }
+
+    /**
+     * Maps an immutable copy of {@code keybind}, so that later changes to the
+     * keybind cannot corrupt the maps.
+     */
+    private void addToMaps(Macro macro, Keybind keybind) {
+        Keybind copy = keybind.copy();
+        keybindMap.put(copy.getKey(), copy);
+        macroMap.put(copy, macro);
+        dispatchTable = null;
+    }
+
+    /**
+     * Unmaps {@code keybind} from {@code macro} unless the macro has another
+     * equal active keybind, and removes it from {@link Profile#keybindMap} if
+     * no macro uses an equal keybind.
+     */
+    private void removeFromMaps(Macro macro, Keybind keybind) {
+        for (Keybind kb : macro.keybinds) {
+            if (kb != keybind && kb.equals(keybind) && macro.isActive(kb)) return;
+        }
+        macroMap.remove(keybind, macro);
+        if (!macroMap.containsKey(keybind)) keybindMap.remove(keybind.getKey(), keybind);
+        dispatchTable = null;
     }
 
     /**
      * Clears and repopulates {@link Profile#keybindMap} and 
-     * {@link Profile#macroMap}.
+     * {@link Profile#macroMap}, and recompiles the {@link DispatchTable}.
      */
     public void rebuildMaps() {
         keybindMap.clear();
         macroMap.clear();
+        // Compact the group list, keeping the state of groups still in use
+        List<String> disabled = disabledGroups.stream().mapToObj(groups::get).toList();
+        groups.clear();
+        disabledGroups.clear();
         for (Macro macro : macros) {
             addToMaps(macro);
         }
+        for (String name : disabled) {
+            int index = groups.indexOf(name);
+            if (index != -1) disabledGroups.set(index);
+        }
+        dispatchTable = DispatchTable.compile(keybindMap, macroMap);
+    }
+
+    /**
+     * @return the {@link DispatchTable} for the current state of
+     * {@link Profile#keybindMap} and {@link Profile#macroMap}, compiling it if
+     * the maps have changed since it was last compiled.
+     */
+    public DispatchTable dispatchTable() {
+        if (dispatchTable == null) dispatchTable = DispatchTable.compile(keybindMap, macroMap);
+        return dispatchTable;
+    }
+
+    /**
+     * @return the {@link SequenceAutomaton} for the current {@link KeySequence}
+     * instances of the macros of this profile, compiling it if the macros have
+     * changed since it was last compiled.
+     */
+    public SequenceAutomaton sequenceAutomaton() {
+        if (sequenceAutomaton == null) sequenceAutomaton = SequenceAutomaton.compile(macros);
+        return sequenceAutomaton;
+    }
+    
+    // Macro group management
+
+    /**
+     * @return the index of the group {@code name}, adding it to the group list
+     * if not already present, or {@link Profile#NO_GROUP} if {@code name} is 
+     * blank.
+     */
+    private int groupIndex(String name) {
+        if (name.isBlank()) return NO_GROUP;
+        int index = groups.indexOf(name);
+        if (index == -1) {
+            index = groups.size();
+            groups.add(name);
+        }
+        return index;
+    }
+
+    /**
+     * @return the names of all groups in use by macros of this profile.
+     */
+    public List<String> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * @return {@code true} if {@code macro} is not in a group, or its group is
+     * enabled, {@code false} otherwise.
+     */
+    public boolean isEnabled(Macro macro) {
+        return macro.groupIndex == NO_GROUP || !disabledGroups.get(macro.groupIndex);
+    }
+
+    /**
+     * @return {@code true} if the group exists and is enabled, {@code false}
+     * otherwise.
+     */
+    public boolean isGroupEnabled(String name) {
+        int index = groups.indexOf(name);
+        return index != -1 && !disabledGroups.get(index);
+    }
+
+    /**
+     * Enables or disables all macros of the group {@code name}. This is not 
+     * saved to the config.
+     * @return {@code true} if the group exists, {@code false} otherwise.
+     */
+    public boolean setGroupEnabled(String name, boolean enabled) {
+        int index = groups.indexOf(name);
+        if (index == -1) return false;
+        disabledGroups.set(index, !enabled);
+        return true;
+    }
+
+    /**
+     * Toggles all macros of the group {@code name}. This is not saved to the
+     * config.
+     * @return {@code true} if the group exists, {@code false} otherwise.
+     */
+    public boolean toggleGroup(String name) {
+        int index = groups.indexOf(name);
+        if (index == -1) return false;
+        disabledGroups.flip(index);
+        return true;
+    }
+
+    /**
+     * Toggles the group of {@code macro}, if it has one.
+     */
+    public void toggleGroup(Macro macro) {
+        if (macro.groupIndex != NO_GROUP) disabledGroups.flip(macro.groupIndex);
     }
     
     // Macro editing
     
+    public void setGroup(Macro macro, String group) {
+        group = group.strip();
+        if (group.equals(macro.group)) return;
+        macro.group = group;
+        rebuildMaps();
+    }
+    
     public void setSendMode(Macro macro, Macro.SendMode sendMode) {
         if (sendMode.equals(macro.sendMode)) return;
         macro.clearScheduled();
+        removeFromMaps(macro);
         macro.sendMode = sendMode;
-        rebuildMaps();
+        addToMaps(macro);
+    }
+    
+    public void setDelayUnit(Macro macro, Macro.DelayUnit delayUnit) {
+        if (delayUnit.equals(macro.delayUnit)) return;
+        macro.clearScheduled();
+        macro.delayUnit = delayUnit;
+    }
+    
+    public void setCatchUpPolicy(Macro macro, Macro.CatchUpPolicy catchUpPolicy) {
+        if (catchUpPolicy.equals(macro.catchUpPolicy)) return;
+        macro.clearScheduled();
+        macro.catchUpPolicy = catchUpPolicy;
+    }
+    
+    public void setRetriggerPolicy(Macro macro, Macro.RetriggerPolicy retriggerPolicy) {
+        if (retriggerPolicy.equals(macro.retriggerPolicy)) return;
+        macro.clearScheduled();
+        macro.retriggerPolicy = retriggerPolicy;
     }
     
     public void setConflictStrategy(Macro macro, Macro.ConflictStrategy conflictStrategy) {
         if (conflictStrategy.equals(macro.conflictStrategy)) return;
         macro.clearScheduled();
         macro.conflictStrategy = conflictStrategy;
+        dispatchTable = null;
     }
     
     public void setKey(Macro macro, Keybind keybind, InputConstants.Key key) {
         if (key.equals(keybind.getKey())) return;
-        if (keybind == macro.keybind || keybind == macro.altKeybind) {
-            macro.clearScheduled();
-            keybind.setKey(key);
-            rebuildMaps();
-        }
+        editKeybind(macro, keybind, () -> keybind.setKey(key));
     }
 
     public void setLimitKey(Macro macro, Keybind keybind, InputConstants.Key key) {
-        if (key.equals(keybind.getLimitKey())) return;
-        if (keybind == macro.keybind || keybind == macro.altKeybind) {
-            macro.clearScheduled();
-            keybind.setLimitKey(key);
-            rebuildMaps();
-        }
+        setLimitKeys(macro, keybind, List.of(key));
+    }
+
+    public void setLimitKeys(Macro macro, Keybind keybind, Collection<InputConstants.Key> keys) {
+        if (Keybind.sortLimitKeys(keybind.getKey(), keys).equals(keybind.getLimitKeys())) return;
+        editKeybind(macro, keybind, () -> keybind.setLimitKeys(keys));
+    }
+
+    public void setRole(Macro macro, Keybind keybind, Keybind.Role role) {
+        if (role.equals(keybind.role)) return;
+        editKeybind(macro, keybind, () -> keybind.role = role);
+    }
+
+    /**
+     * Adds a new unbound {@link Keybind} with the specified role to 
+     * {@code macro}.
+     * @return the new keybind.
+     */
+    public Keybind addKeybind(Macro macro, Keybind.Role role) {
+        Keybind keybind = new Keybind(role);
+        macro.keybinds.add(keybind);
+        if (macro.isActive(keybind)) addToMaps(macro, keybind);
+        return keybind;
+    }
+
+    /**
+     * Removes {@code keybind} from {@code macro}, unless it is the primary or
+     * alternate keybind of the macro.
+     */
+    public void removeKeybind(Macro macro, Keybind keybind) {
+        if (keybind == macro.getKeybind() || keybind == macro.getAltKeybind()) return;
+        if (!macro.ownsKeybind(keybind)) return;
+        if (macro.isActive(keybind)) removeFromMaps(macro, keybind);
+        macro.keybinds.removeIf((kb) -> kb == keybind);
+    }
+
+    /**
+     * Applies {@code edit} to {@code keybind}, updating the maps for that
+     * keybind only.
+     */
+    private void editKeybind(Macro macro, Keybind keybind, Runnable edit) {
+        if (!macro.ownsKeybind(keybind)) return;
+        macro.clearScheduled();
+        if (macro.isActive(keybind)) removeFromMaps(macro, keybind);
+        edit.run();
+        if (macro.isActive(keybind)) addToMaps(macro, keybind);
+    }
+    
+    public void setSequence(Macro macro, List<InputConstants.Key> keys) {
+        if (keys.equals(macro.sequence.getKeys())) return;
+        macro.clearScheduled();
+        macro.sequence.setKeys(keys);
+        sequenceAutomaton = null;
     }
     
     public void setAddToHistory(Macro macro, boolean value) {
@@ -288,11 +523,11 @@ public class Profile {
         macros.removeIf((macro) -> {
             // Allow trailing whitespace only for TYPE mode
             if (!macro.sendMode.equals(Macro.SendMode.TYPE)) {
-                macro.messages.forEach((msg) -> msg.string = msg.string.stripTrailing());
+                macro.messages.forEach((msg) -> msg.setString(msg.getString().stripTrailing()));
             }
             // Allow blank messages for CYCLE mode as spacers
             if (!macro.sendMode.equals(Macro.SendMode.CYCLE)) {
-                macro.messages.removeIf((msg) -> msg.string.isBlank());
+                macro.messages.removeIf((msg) -> msg.getString().isBlank());
             }
             if (macro.messages.isEmpty()) {
                 removeFromMaps(macro);
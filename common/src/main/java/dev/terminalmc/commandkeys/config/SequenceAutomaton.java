@@ -0,0 +1,201 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.config;
+
+import com.mojang.blaze3d.platform.InputConstants;
+
+import java.util.*;
+
+/**
+ * A deterministic automaton compiled from the {@link KeySequence} instances
+ * of the macros of a {@link Profile}, stepped once per key-press.
+ *
+ * <p>States are the nodes of a trie of all sequences, with state 0 as the
+ * root. The transition table is fully populated over the alphabet of keys
+ * used in any sequence: a key which does not continue the current sequence
+ * restarts matching from the root, and a key not in the alphabet returns to
+ * the root. The cost of a step is therefore independent of the number of
+ * sequences.</p>
+ *
+ * <p>A state at the end of a sequence is accepting. If it has no onward
+ * transitions its macros are activated immediately; otherwise activation is
+ * deferred until a key which does not continue the sequence is pressed, or
+ * the sequence times out.</p>
+ */
+public final class SequenceAutomaton {
+    public static final int NONE = -1;
+    public static final SequenceAutomaton EMPTY = new SequenceAutomaton(new int[0],
+            new int[]{0}, new int[1], new boolean[1], new int[]{0, 0}, new Macro[0]);
+
+    private static final int ROOT = 0;
+
+    // Sorted packed key codes of the alphabet
+    private final int[] alphabet;
+    // Next state for each state and alphabet index, at state * alphabet.length + index
+    private final int[] transitions;
+    private final int[] depth;
+    private final boolean[] leaf;
+    // Index of the first macro of each state, non-empty only for accepting states
+    private final int[] macroStart;
+    private final Macro[] macros;
+
+    // Matching state
+    private int state = ROOT;
+    private int idleTicks = 0;
+    // A second accepting state reached by the last step
+    private int pending = NONE;
+
+    private SequenceAutomaton(int[] alphabet, int[] transitions, int[] depth, boolean[] leaf,
+                              int[] macroStart, Macro[] macros) {
+        this.alphabet = alphabet;
+        this.transitions = transitions;
+        this.depth = depth;
+        this.leaf = leaf;
+        this.macroStart = macroStart;
+        this.macros = macros;
+    }
+
+    /**
+     * Compiles the bound sequences of {@code macros} into a new
+     * {@link SequenceAutomaton}.
+     */
+    static SequenceAutomaton compile(List<Macro> macros) {
+        // Build trie
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<List<Macro>> accepted = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        SortedSet<Integer> alphabetSet = new TreeSet<>();
+        children.add(new HashMap<>());
+        accepted.add(new ArrayList<>());
+        depths.add(0);
+        for (Macro macro : macros) {
+            if (!macro.sequence.isBound()) continue;
+            int node = ROOT;
+            for (InputConstants.Key key : macro.sequence.getKeys()) {
+                int code = DispatchTable.pack(key);
+                alphabetSet.add(code);
+                Integer next = children.get(node).get(code);
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(code, next);
+                    children.add(new HashMap<>());
+                    accepted.add(new ArrayList<>());
+                    depths.add(depths.get(node) + 1);
+                }
+                node = next;
+            }
+            accepted.get(node).add(macro);
+        }
+        if (alphabetSet.isEmpty()) return EMPTY;
+
+        // Populate transition table
+        int[] alphabet = alphabetSet.stream().mapToInt(Integer::intValue).toArray();
+        int numStates = children.size();
+        int[] transitions = new int[numStates * alphabet.length];
+        int[] depth = new int[numStates];
+        boolean[] leaf = new boolean[numStates];
+        for (int s = 0; s < numStates; s++) {
+            depth[s] = depths.get(s);
+            leaf[s] = children.get(s).isEmpty();
+            for (int a = 0; a < alphabet.length; a++) {
+                Integer next = children.get(s).get(alphabet[a]);
+                if (next == null) next = children.get(ROOT).getOrDefault(alphabet[a], ROOT);
+                transitions[s * alphabet.length + a] = next;
+            }
+        }
+
+        // Populate accepted macros
+        int[] macroStart = new int[numStates + 1];
+        List<Macro> macroList = new ArrayList<>();
+        for (int s = 0; s < numStates; s++) {
+            macroStart[s] = macroList.size();
+            macroList.addAll(accepted.get(s));
+        }
+        macroStart[numStates] = macroList.size();
+
+        return new SequenceAutomaton(alphabet, transitions, depth, leaf,
+                macroStart, macroList.toArray(new Macro[0]));
+    }
+
+    /**
+     * Advances the automaton by one key-press.
+     *
+     * <p>A key-press may both break a deferred sequence and complete another
+     * sequence, in which case the deferred state is returned and the other
+     * is held until {@link #pollPending}.</p>
+     * @param key the packed code of the pressed key.
+     * @return an accepting state whose macros should be activated, or
+     * {@link SequenceAutomaton#NONE}.
+     */
+    public int step(int key) {
+        idleTicks = 0;
+        int a = Arrays.binarySearch(alphabet, key);
+        int next = a < 0 ? ROOT : transitions[state * alphabet.length + a];
+        // A deferred accepting state is activated if the sequence is broken
+        int accepted = (isAccepting(state) && depth[next] != depth[state] + 1) ? state : NONE;
+        state = next;
+        pending = NONE;
+        if (isAccepting(state) && leaf[state]) {
+            if (accepted == NONE) accepted = state;
+            else pending = state;
+            state = ROOT;
+        }
+        return accepted;
+    }
+
+    /**
+     * @return the second accepting state reached by the last 
+     * {@link #step}, or {@link SequenceAutomaton#NONE}. Cleared by this 
+     * call.
+     */
+    public int pollPending() {
+        int accepted = pending;
+        pending = NONE;
+        return accepted;
+    }
+
+    /**
+     * Advances the timeout of the automaton by one tick.
+     * @param timeoutTicks the number of ticks after the last key-press after
+     * which the current sequence is abandoned.
+     * @return an accepting state whose macros should be activated, or
+     * {@link SequenceAutomaton#NONE}.
+     */
+    public int tick(int timeoutTicks) {
+        if (state == ROOT || ++idleTicks < timeoutTicks) return NONE;
+        int accepted = isAccepting(state) ? state : NONE;
+        state = ROOT;
+        idleTicks = 0;
+        return accepted;
+    }
+
+    private boolean isAccepting(int state) {
+        return macroStart[state] != macroStart[state + 1];
+    }
+
+    public int macroStart(int state) {
+        return macroStart[state];
+    }
+
+    public int macroEnd(int state) {
+        return macroStart[state + 1];
+    }
+
+    public Macro getMacro(int index) {
+        return macros[index];
+    }
+}
@@ -118,6 +118,7 @@ public class OptionsScreen extends OptionsSubScreen {
 
     @Override
     public void onClose() {
+        optionList.commitEdits();
         if (lastScreen instanceof OptionsScreen screen) {
             screen.reload(width, height);
         } else {
@@ -136,6 +137,7 @@ public class OptionsScreen extends OptionsSubScreen {
 
     public OptionList reload(int width, int height) {
         clearWidgets();
+        optionList.commitEdits();
         optionList = optionList.reload(this, width, height - TOP_MARGIN - BOTTOM_MARGIN,
                 optionList.getScrollAmount());
         addRenderableWidget(optionList);
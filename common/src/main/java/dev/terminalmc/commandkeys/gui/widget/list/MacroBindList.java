@@ -20,22 +20,27 @@ import com.mojang.blaze3d.platform.InputConstants;
 import dev.terminalmc.commandkeys.CommandKeys;
 import dev.terminalmc.commandkeys.config.*;
 import dev.terminalmc.commandkeys.mixin.accessor.KeyMappingAccessor;
+import dev.terminalmc.commandkeys.util.KeybindUtil;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.options.controls.KeyBindsScreen;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An extension of {@link OptionList} allowing handling of key presses and 
- * mouse button clicks for setting keybinds and triggering macros.
+ * mouse button clicks for setting keybinds and key sequences, and triggering
+ * macros.
  */
 public abstract class MacroBindList extends OptionList {
     protected @NotNull Profile profile;
     private @Nullable Macro macro;
     private @Nullable Keybind keybind;
-    private InputConstants.Key heldKey;
+    private final List<InputConstants.Key> heldKeys = new ArrayList<>();
+    private @Nullable Macro sequenceMacro;
+    private final List<InputConstants.Key> sequenceKeys = new ArrayList<>();
     private InputConstants.Key sendKey;
 
     public MacroBindList(Minecraft mc, int width, int height, int y,
@@ -54,31 +59,49 @@ public abstract class MacroBindList extends OptionList {
         this.keybind = keybind;
     }
 
+    protected void setSelectedSequence(@NotNull Macro macro) {
+        if (!profile.getMacros().contains(macro)) throw new IllegalArgumentException(
+                "Specified macro does not exist in profile.");
+        this.sequenceMacro = macro;
+        this.sequenceKeys.clear();
+    }
+
+    /**
+     * While a keybind is selected, records each distinct key pressed. The
+     * keybind is set when any of the recorded keys is released, using the 
+     * last pressed key as the primary key and all others as limit keys.
+     * 
+     * <p>While a key sequence is selected, records each key pressed or mouse
+     * button clicked. The sequence is set when Enter is pressed, or cleared
+     * when Escape is pressed.</p>
+     */
     @Override
     public boolean keyPressed(InputConstants.Key key) {
-        if (macro != null && keybind != null) {
+        if (sequenceMacro != null) {
+            boolean keyboard = key.getType().equals(InputConstants.Type.KEYSYM);
+            if (keyboard && key.getValue() == InputConstants.KEY_ESCAPE) {
+                sequenceKeys.clear();
+            } else if (!keyboard || (key.getValue() != InputConstants.KEY_RETURN 
+                    && key.getValue() != InputConstants.KEY_NUMPADENTER)) {
+                sequenceKeys.add(key);
+                return true;
+            }
+            profile.setSequence(sequenceMacro, sequenceKeys);
+            sequenceKeys.clear();
+            reload();
+            return true;
+        }
+        else if (macro != null && keybind != null) {
             if (key.getValue() == InputConstants.KEY_ESCAPE) {
                 profile.setKey(macro, keybind, InputConstants.UNKNOWN);
                 profile.setLimitKey(macro, keybind, InputConstants.UNKNOWN);
                 reload();
+                return true;
             }
-            else {
-                if (heldKey == null) {
-                    heldKey = key;
-                }
-                else {
-                    if (key != heldKey) {
-                        profile.setKey(macro, keybind, key);
-                        profile.setLimitKey(macro, keybind, heldKey);
-                        reload();
-                    }
-                    else {
-                        return false;
-                    }
-                }
-                return false;
+            else if (!heldKeys.contains(key)) {
+                heldKeys.add(key);
             }
-            return true;
+            return false;
         }
         else if (getSelected() == null && !key.equals(((KeyMappingAccessor) CommandKeys.CONFIG_KEY).getKey())) {
             sendKey = key;
@@ -89,33 +112,23 @@ public abstract class MacroBindList extends OptionList {
     @Override
     public boolean keyReleased(InputConstants.Key key) {
         if (macro != null && keybind != null) {
-            if (heldKey == key) {
-                profile.setKey(macro, keybind, key);
-                profile.setLimitKey(macro, keybind, InputConstants.UNKNOWN);
+            if (heldKeys.contains(key)) {
+                InputConstants.Key primary = heldKeys.removeLast();
+                profile.setKey(macro, keybind, primary);
+                profile.setLimitKeys(macro, keybind, heldKeys);
+                heldKeys.clear();
                 reload();
                 return true;
             }
         }
         else if (key.equals(sendKey)) {
             if (getSelected() == null && CommandKeys.inGame()) {
-                Collection<Keybind> keybinds = profile.keybindMap.get(key);
-                Keybind active1 = null;
-                Keybind active2 = null;
-                for (Keybind kb : keybinds) {
-                    if (kb.isLimitKeyDown()) {
-                        active1 = kb;
-                        break;
-                    } else if (kb.getLimitKey().equals(InputConstants.UNKNOWN)) {
-                        active2 = kb;
-                    }
-                }
-                if (active1 == null) active1 = active2;
-                Collection<Macro> macros = profile.macroMap.get(active1);
-                if (!macros.isEmpty()) {
+                DispatchTable table = profile.dispatchTable();
+                int group = table.resolve(DispatchTable.pack(key), false, profile);
+                if (group != DispatchTable.NONE) {
                     screen.onClose();
                     minecraft.setScreen(null);
-                    Keybind trigger = active1;
-                    macros.forEach((macro) -> macro.trigger(trigger));
+                    KeybindUtil.activateGroup(table, group);
                     return true;
                 }
             }
@@ -26,11 +26,13 @@ import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.*;
 import net.minecraft.network.chat.CommonComponents;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import static dev.terminalmc.commandkeys.config.Macro.ConflictStrategy.*;
 import static dev.terminalmc.commandkeys.config.Macro.SendMode.*;
@@ -47,6 +49,20 @@ public class MacroOptionList extends MacroBindList {
         this.macro = macro;
 
         addEntry(new Entry.BindAndControlsEntry(entryX, entryWidth, entryHeight, this, profile, macro));
+        for (Keybind keybind : macro.getKeybinds()) {
+            if (keybind == macro.getKeybind() || keybind == macro.getAltKeybind()) continue;
+            addEntry(new Entry.KeybindEntry(entryX, entryWidth, entryHeight, this, 
+                    profile, macro, keybind));
+        }
+        addEntry(new OptionList.Entry.ActionButtonEntry(entryX, entryWidth, entryHeight,
+                localized("option", "key.bind.add"), 
+                Tooltip.create(localized("option", "key.bind.add.tooltip")), -1,
+                (button) -> {
+                    profile.addKeybind(macro, Keybind.Role.TRIGGER);
+                    reload();
+                }));
+        addEntry(new Entry.SequenceEntry(entryX, entryWidth, entryHeight, this, macro));
+        addEntry(new Entry.GroupAndUnitEntry(entryX, entryWidth, entryHeight, this, profile, macro));
 
         if (profile.getShowHudMessage().equals(Profile.Control.DEFER)
                 || profile.getAddToHistory().equals(Profile.Control.DEFER)) {
@@ -81,6 +97,13 @@ public class MacroOptionList extends MacroBindList {
         return newListWidget;
     }
 
+    @Override
+    public void commitEdits() {
+        for (OptionList.Entry e : children()) {
+            if (e instanceof Entry.GroupAndUnitEntry entry) entry.commitGroup();
+        }
+    }
+
     void focusDelayField() {
         for (OptionList.Entry e : children()) {
             if (e instanceof Entry.StrategyAndModeEntry entry) {
@@ -251,6 +274,163 @@ public class MacroOptionList extends MacroBindList {
             }
         }
 
+        private static class KeybindEntry extends Entry {
+            KeybindEntry(int x, int width, int height, MacroOptionList list,
+                         Profile profile, Macro macro, Keybind keybind) {
+                super();
+                int roleButtonWidth = (width - SPACING) / 3;
+                int keyButtonWidth = width - roleButtonWidth - list.smallButtonWidth - SPACING * 2;
+
+                KeybindUtil.KeybindInfo info = new KeybindUtil.KeybindInfo(profile, macro, keybind);
+                Button keyButton = Button.builder(info.conflictLabel,
+                                (button) -> {
+                                    list.setSelected(macro, keybind);
+                                    button.setMessage(Component.literal("> ")
+                                            .append(info.label.withStyle(ChatFormatting.WHITE)
+                                                    .withStyle(ChatFormatting.UNDERLINE))
+                                            .append(" <").withStyle(ChatFormatting.YELLOW));
+                                })
+                        .tooltip(Tooltip.create(info.tooltip))
+                        .pos(x, 0)
+                        .size(keyButtonWidth, height)
+                        .build();
+                keyButton.active = macro.usesKeybind(keybind);
+                elements.add(keyButton);
+
+                elements.add(CycleButton.builder(KeybindUtil::localizeRole)
+                        .withValues(Keybind.Role.values())
+                        .withInitialValue(keybind.getRole())
+                        .withTooltip((status) -> Tooltip.create(
+                                KeybindUtil.localizeRoleTooltip(status)))
+                        .create(x + keyButtonWidth + SPACING, 0, roleButtonWidth, height,
+                                localized("option", "key.role"),
+                                (button, status) -> {
+                                    profile.setRole(macro, keybind, status);
+                                    list.reload();
+                                }));
+
+                elements.add(Button.builder(Component.literal("\u274C")
+                                        .withStyle(ChatFormatting.RED),
+                                (button) -> {
+                                    profile.removeKeybind(macro, keybind);
+                                    list.reload();
+                                })
+                        .pos(x + width - list.smallButtonWidth, 0)
+                        .size(list.smallButtonWidth, height)
+                        .build());
+            }
+        }
+
+        private static class SequenceEntry extends Entry {
+            SequenceEntry(int x, int width, int height, MacroOptionList list, Macro macro) {
+                super();
+                MutableComponent keys = Component.empty();
+                for (InputConstants.Key key : macro.getSequence().getKeys()) {
+                    if (!keys.getSiblings().isEmpty()) keys.append(", ");
+                    keys.append(key.getDisplayName());
+                }
+                if (keys.getSiblings().isEmpty()) {
+                    keys.append(localized("option", "key.sequence.none"));
+                }
+                elements.add(Button.builder(localized("option", "key.sequence", keys),
+                                (button) -> {
+                                    list.setSelectedSequence(macro);
+                                    button.setMessage(Component.literal("> ")
+                                            .append(localized("option", "key.sequence", "...")
+                                                    .withStyle(ChatFormatting.WHITE)
+                                                    .withStyle(ChatFormatting.UNDERLINE))
+                                            .append(" <").withStyle(ChatFormatting.YELLOW));
+                                })
+                        .tooltip(Tooltip.create(localized("option", "key.sequence.tooltip")))
+                        .pos(x, 0)
+                        .size(width, height)
+                        .build());
+            }
+        }
+
+        private static class GroupAndUnitEntry extends Entry {
+            private final Profile profile;
+            private final Macro macro;
+            private final EditBox groupField;
+
+            GroupAndUnitEntry(int x, int width, int height, MacroOptionList list,
+                              Profile profile, Macro macro) {
+                super();
+                this.profile = profile;
+                this.macro = macro;
+                Font font = Minecraft.getInstance().font;
+                boolean repeat = macro.getMode().equals(Macro.SendMode.REPEAT);
+                boolean send = macro.getMode().equals(Macro.SendMode.SEND);
+                int buttonWidth = repeat || send 
+                        ? (width - SPACING * 2) / 3 
+                        : (width - SPACING) / 2;
+
+                groupField = new EditBox(font, x, 0, buttonWidth, height, Component.empty()) {
+                    @Override
+                    public void setFocused(boolean focused) {
+                        // Commit on focus loss, not on each keystroke
+                        if (!focused && isFocused()) commitGroup();
+                        super.setFocused(focused);
+                    }
+                };
+                groupField.setHint(localized("option", "key.group")
+                        .withStyle(ChatFormatting.DARK_GRAY));
+                groupField.setTooltip(Tooltip.create(localized("option", "key.group.tooltip")));
+                groupField.setTooltipDelay(Duration.ofMillis(500));
+                groupField.setMaxLength(64);
+                groupField.setValue(macro.getGroup());
+                elements.add(groupField);
+
+                elements.add(CycleButton.<Macro.DelayUnit>builder((unit) -> localized("option",
+                                "key.delay.unit." + unit.toString().toLowerCase(Locale.ROOT)))
+                        .withValues(Macro.DelayUnit.values())
+                        .withInitialValue(macro.getDelayUnit())
+                        .withTooltip((unit) -> Tooltip.create(localized("option",
+                                "key.delay.unit." + unit.toString().toLowerCase(Locale.ROOT) 
+                                        + ".tooltip")))
+                        .create(x + buttonWidth + SPACING, 0, buttonWidth, height,
+                                localized("option", "key.delay.unit"),
+                                (button, unit) -> {
+                                    profile.setDelayUnit(macro, unit);
+                                    list.reload();
+                                }));
+
+                if (repeat) {
+                    CycleButton<Macro.CatchUpPolicy> catchUpButton = CycleButton.<Macro.CatchUpPolicy>builder(
+                                    (policy) -> localized("option", "key.catchUp."
+                                            + policy.toString().toLowerCase(Locale.ROOT)))
+                            .withValues(Macro.CatchUpPolicy.values())
+                            .withInitialValue(macro.getCatchUpPolicy())
+                            .withTooltip((policy) -> Tooltip.create(localized("option",
+                                    "key.catchUp." + policy.toString().toLowerCase(Locale.ROOT)
+                                            + ".tooltip")))
+                            .create(x + width - buttonWidth, 0, buttonWidth, height,
+                                    localized("option", "key.catchUp"),
+                                    (button, policy) -> profile.setCatchUpPolicy(macro, policy));
+                    catchUpButton.setTooltipDelay(Duration.ofMillis(500));
+                    elements.add(catchUpButton);
+                } else if (send) {
+                    CycleButton<Macro.RetriggerPolicy> retriggerButton = CycleButton.<Macro.RetriggerPolicy>builder(
+                                    (policy) -> localized("option", "key.retrigger."
+                                            + policy.toString().toLowerCase(Locale.ROOT)))
+                            .withValues(Macro.RetriggerPolicy.values())
+                            .withInitialValue(macro.getRetriggerPolicy())
+                            .withTooltip((policy) -> Tooltip.create(localized("option",
+                                    "key.retrigger." + policy.toString().toLowerCase(Locale.ROOT)
+                                            + ".tooltip")))
+                            .create(x + width - buttonWidth, 0, buttonWidth, height,
+                                    localized("option", "key.retrigger"),
+                                    (button, policy) -> profile.setRetriggerPolicy(macro, policy));
+                    retriggerButton.setTooltipDelay(Duration.ofMillis(500));
+                    elements.add(retriggerButton);
+                }
+            }
+
+            void commitGroup() {
+                profile.setGroup(macro, groupField.getValue());
+            }
+        }
+
         private static class StrategyAndModeEntry extends Entry {
             private EditBox delayField;
 
@@ -407,8 +587,8 @@ public class MacroOptionList extends MacroBindList {
                         x + list.smallButtonWidth + SPACING, 0, msgFieldWidth, height * 2,
                         Component.empty(), Component.empty());
                 messageField.setCharacterLimit(256);
-                messageField.setValue(msg.string);
-                messageField.setValueListener((val) -> msg.string = val.stripLeading());
+                messageField.setValue(msg.getString());
+                messageField.setValueListener((val) -> macro.setMessage(index, val.stripLeading()));
                 elements.add(messageField);
 
                 // Delay field
@@ -18,20 +18,27 @@ package dev.terminalmc.commandkeys.gui.widget.list;
 
 import com.mojang.blaze3d.platform.InputConstants;
 import dev.terminalmc.commandkeys.CommandKeys;
+import dev.terminalmc.commandkeys.config.Admission;
 import dev.terminalmc.commandkeys.config.Config;
 import dev.terminalmc.commandkeys.config.Macro;
 import dev.terminalmc.commandkeys.config.Profile;
 import dev.terminalmc.commandkeys.gui.screen.OptionsScreen;
 import dev.terminalmc.commandkeys.util.KeybindUtil;
+import dev.terminalmc.commandkeys.util.SendQueue;
+import dev.terminalmc.commandkeys.util.TickBudget;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.*;
 import net.minecraft.network.chat.CommonComponents;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.Locale;
+import java.util.function.IntConsumer;
 
 import static dev.terminalmc.commandkeys.util.Localization.localized;
 
@@ -93,6 +100,16 @@ public class MainOptionList extends OptionList {
                 localized("option", "main.ratelimit", "\u2139"),
                 Tooltip.create(localized("option", "main.ratelimit.tooltip")), 500));
         addEntry(new Entry.RatelimitEntry(entryX, entryWidth, entryHeight));
+        addEntry(new Entry.SendQueueEntry(entryX, entryWidth, entryHeight, this));
+        // The learned rate is only fed by queued sends
+        if (Config.get().ratelimitMode.equals(Config.RatelimitMode.QUEUE)) {
+            addEntry(new Entry.AdaptiveRatelimitEntry(entryX, entryWidth, entryHeight));
+        }
+        addEntry(new Entry.CoalesceEntry(entryX, entryWidth, entryHeight));
+        addEntry(new Entry.AdmissionEntry(entryX, entryWidth, entryHeight));
+        addEntry(new Entry.TickBudgetEntry(entryX, entryWidth, entryHeight));
+        addEntry(new Entry.ChatHistoryEntry(entryX, entryWidth, entryHeight));
+        addEntry(new Entry.LookEntry(entryX, entryWidth, entryHeight));
     }
 
     private void setEditingProfile(@Nullable Profile profile) {
@@ -485,5 +502,316 @@ public class MainOptionList extends OptionList {
                 elements.add(spButton);
             }
         }
+
+        private static class SendQueueEntry extends Entry {
+            SendQueueEntry(int x, int width, int height, MainOptionList list) {
+                super();
+                int buttonWidth = (width - SPACING * 2) / 3;
+
+                CycleButton<Config.RatelimitMode> modeButton = CycleButton.<Config.RatelimitMode>builder(
+                                (mode) -> localized("option", "main.ratelimit.mode."
+                                        + mode.toString().toLowerCase(Locale.ROOT)))
+                        .withValues(Config.RatelimitMode.values())
+                        .withInitialValue(Config.get().ratelimitMode)
+                        .withTooltip((mode) -> Tooltip.create(localized("option", 
+                                "main.ratelimit.mode." + mode.toString().toLowerCase(Locale.ROOT)
+                                        + ".tooltip")))
+                        .create(x, 0, buttonWidth, height,
+                                localized("option", "main.ratelimit.mode"),
+                                (button, mode) -> {
+                                    Config.get().ratelimitMode = mode;
+                                    list.reload();
+                                });
+                modeButton.setTooltipDelay(Duration.ofMillis(500));
+                elements.add(modeButton);
+
+                // Queue size field
+                EditBox sizeField = new EditBox(Minecraft.getInstance().font,
+                        x + buttonWidth + SPACING, 0, buttonWidth, height, Component.empty());
+                sizeField.setMaxLength(6);
+                sizeField.setResponder((val) -> {
+                    try {
+                        int size = Integer.parseInt(val.strip());
+                        if (size < 1) throw new NumberFormatException();
+                        Config.get().setSendQueueSize(size);
+                        sizeField.setTextColor(16777215);
+                    } catch (NumberFormatException ignored) {
+                        sizeField.setTextColor(16711680);
+                    }
+                });
+                sizeField.setValue(String.valueOf(Config.get().getSendQueueSize()));
+                sizeField.setTooltip(Tooltip.create(
+                        localized("option", "main.ratelimit.queueSize.tooltip")));
+                elements.add(sizeField);
+
+                CycleButton<SendQueue.OverflowPolicy> policyButton = CycleButton.<SendQueue.OverflowPolicy>builder(
+                                (policy) -> localized("option", "main.ratelimit.policy."
+                                        + policy.toString().toLowerCase(Locale.ROOT)))
+                        .withValues(SendQueue.OverflowPolicy.values())
+                        .withInitialValue(Config.get().sendQueuePolicy)
+                        .withTooltip((policy) -> Tooltip.create(localized("option",
+                                "main.ratelimit.policy." + policy.toString().toLowerCase(Locale.ROOT)
+                                        + ".tooltip")))
+                        .create(x + width - buttonWidth, 0, buttonWidth, height,
+                                localized("option", "main.ratelimit.policy"),
+                                (button, policy) -> Config.get().sendQueuePolicy = policy);
+                policyButton.setTooltipDelay(Duration.ofMillis(500));
+                elements.add(policyButton);
+            }
+        }
+
+        private static class AdaptiveRatelimitEntry extends Entry {
+            AdaptiveRatelimitEntry(int x, int width, int height) {
+                super();
+
+                CycleButton<Boolean> adaptiveButton = CycleButton.booleanBuilder(
+                                CommonComponents.OPTION_ON.copy().withStyle(ChatFormatting.GREEN),
+                                CommonComponents.OPTION_OFF.copy().withStyle(ChatFormatting.RED))
+                        .withInitialValue(Config.get().ratelimitAdaptive)
+                        .withTooltip((status) -> Tooltip.create(
+                                localized("option", "main.ratelimit.adaptive.tooltip")))
+                        .create(x, 0, width, height,
+                                localized("option", "main.ratelimit.adaptive"),
+                                (button, status) -> Config.get().ratelimitAdaptive = status);
+                adaptiveButton.setTooltipDelay(Duration.ofMillis(500));
+                elements.add(adaptiveButton);
+            }
+        }
+
+        private static class CoalesceEntry extends Entry {
+            CoalesceEntry(int x, int width, int height) {
+                super();
+                int fieldWidth = (width - SPACING * 2) / 6;
+                int buttonWidth = width - fieldWidth - SPACING;
+
+                CycleButton<Boolean> coalesceButton = CycleButton.booleanBuilder(
+                                CommonComponents.OPTION_ON.copy().withStyle(ChatFormatting.GREEN),
+                                CommonComponents.OPTION_OFF.copy().withStyle(ChatFormatting.RED))
+                        .withInitialValue(Config.get().coalesceSends)
+                        .withTooltip((status) -> Tooltip.create(
+                                localized("option", "main.ratelimit.coalesce.tooltip")))
+                        .create(x, 0, buttonWidth, height,
+                                localized("option", "main.ratelimit.coalesce"),
+                                (button, status) -> Config.get().coalesceSends = status);
+                coalesceButton.setTooltipDelay(Duration.ofMillis(500));
+                elements.add(coalesceButton);
+
+                // De-duplication window field
+                EditBox windowField = new EditBox(Minecraft.getInstance().font,
+                        x + width - fieldWidth, 0, fieldWidth, height, Component.empty());
+                windowField.setMaxLength(6);
+                windowField.setResponder((val) -> {
+                    try {
+                        int ticks = Integer.parseInt(val.strip());
+                        if (ticks < 0) throw new NumberFormatException();
+                        Config.get().setCoalesceWindowTicks(ticks);
+                        windowField.setTextColor(16777215);
+                    } catch (NumberFormatException ignored) {
+                        windowField.setTextColor(16711680);
+                    }
+                });
+                windowField.setValue(String.valueOf(Config.get().getCoalesceWindowTicks()));
+                windowField.setTooltip(Tooltip.create(
+                        localized("option", "main.ratelimit.coalesce.window.tooltip")));
+                elements.add(windowField);
+            }
+        }
+
+        private static class AdmissionEntry extends Entry {
+            private static final String[] KEYS = {
+                    "main.limit.macroRuns", "main.limit.activeRuns", "main.limit.pendingSends"};
+
+            AdmissionEntry(int x, int width, int height) {
+                super();
+                int fieldWidth = (width - SPACING * 2) / 3;
+
+                elements.add(limitField(x, fieldWidth, height, 
+                        Config.get().getMaxRunsPerMacro(), Config.get()::setMaxRunsPerMacro));
+                elements.add(limitField(x + fieldWidth + SPACING, fieldWidth, height, 
+                        Config.get().getMaxActiveRuns(), Config.get()::setMaxActiveRuns));
+                elements.add(limitField(x + width - fieldWidth, fieldWidth, height, 
+                        Config.get().getMaxPendingSends(), Config.get()::setMaxPendingSends));
+                updateTooltips();
+            }
+
+            @Override
+            public void render(@NotNull GuiGraphics graphics, int index, int y, int x,
+                               int entryWidth, int entryHeight, int mouseX, int mouseY,
+                               boolean hovered, float tickDelta) {
+                // Stats change while the screen is open
+                if (hovered) updateTooltips();
+                super.render(graphics, index, y, x, entryWidth, entryHeight, 
+                        mouseX, mouseY, hovered, tickDelta);
+            }
+
+            private void updateTooltips() {
+                Component stats = localized("option", "main.limit.stats",
+                        Admission.getActiveRuns(), Admission.getPendingSends(),
+                        Admission.getRefusedRuns(), Admission.getIgnoredTriggers(),
+                        Admission.getRestartedRuns(), Admission.getQueuedTriggers());
+                for (int i = 0; i < KEYS.length; i++) {
+                    elements.get(i).setTooltip(Tooltip.create(localized("option", 
+                            KEYS[i] + ".tooltip").append("\n\n").append(stats)));
+                }
+            }
+
+            private static EditBox limitField(int x, int width, int height, int value,
+                                              IntConsumer setter) {
+                EditBox field = new EditBox(Minecraft.getInstance().font,
+                        x, 0, width, height, Component.empty());
+                field.setMaxLength(6);
+                field.setResponder((val) -> {
+                    try {
+                        int max = Integer.parseInt(val.strip());
+                        if (max < 1) throw new NumberFormatException();
+                        setter.accept(max);
+                        field.setTextColor(16777215);
+                    } catch (NumberFormatException ignored) {
+                        field.setTextColor(16711680);
+                    }
+                });
+                field.setValue(String.valueOf(value));
+                return field;
+            }
+        }
+
+        private static class TickBudgetEntry extends Entry {
+            TickBudgetEntry(int x, int width, int height) {
+                super();
+                int fieldWidth = (width - SPACING * 2) / 6;
+                int labelWidth = width - fieldWidth - SPACING;
+
+                Button label = Button.builder(localized("option", "main.budget"), (button -> {}))
+                        .pos(x, 0)
+                        .size(labelWidth, height)
+                        .build();
+                label.active = false;
+                elements.add(label);
+
+                // Budget field
+                EditBox budgetField = new EditBox(Minecraft.getInstance().font,
+                        x + width - fieldWidth, 0, fieldWidth, height, Component.empty());
+                budgetField.setMaxLength(6);
+                budgetField.setResponder((val) -> {
+                    try {
+                        int micros = Integer.parseInt(val.strip());
+                        if (micros < 0) throw new NumberFormatException();
+                        Config.get().setTickBudgetMicros(micros);
+                        budgetField.setTextColor(16777215);
+                    } catch (NumberFormatException ignored) {
+                        budgetField.setTextColor(16711680);
+                    }
+                });
+                budgetField.setValue(String.valueOf(Config.get().getTickBudgetMicros()));
+                elements.add(budgetField);
+                updateTooltips();
+            }
+
+            @Override
+            public void render(@NotNull GuiGraphics graphics, int index, int y, int x,
+                               int entryWidth, int entryHeight, int mouseX, int mouseY,
+                               boolean hovered, float tickDelta) {
+                // Stats change while the screen is open
+                if (hovered) updateTooltips();
+                super.render(graphics, index, y, x, entryWidth, entryHeight, 
+                        mouseX, mouseY, hovered, tickDelta);
+            }
+
+            private void updateTooltips() {
+                TickBudget budget = CommandKeys.tickBudget;
+                Tooltip tooltip = Tooltip.create(localized("option", "main.budget.tooltip")
+                        .append("\n\n").append(localized("option", "main.budget.stats",
+                                budget.getOverruns(), budget.getSlices(),
+                                budget.getMeanOverrunMicros(), budget.getMaxOverrunMicros(),
+                                budget.getDeferred())));
+                for (AbstractWidget element : elements) element.setTooltip(tooltip);
+            }
+        }
+
+        private static class ChatHistoryEntry extends Entry {
+            ChatHistoryEntry(int x, int width, int height) {
+                super();
+                int fieldWidth = (width - SPACING * 2) / 6;
+                int labelWidth = width - fieldWidth - SPACING;
+                Tooltip tooltip = Tooltip.create(localized("option", "main.chatHistory.tooltip"));
+
+                Button label = Button.builder(localized("option", "main.chatHistory"), 
+                                (button -> {}))
+                        .pos(x, 0)
+                        .size(labelWidth, height)
+                        .build();
+                label.active = false;
+                label.setTooltip(tooltip);
+                elements.add(label);
+
+                // Depth field
+                EditBox depthField = new EditBox(Minecraft.getInstance().font,
+                        x + width - fieldWidth, 0, fieldWidth, height, Component.empty());
+                depthField.setMaxLength(5);
+                depthField.setResponder((val) -> {
+                    try {
+                        int depth = Integer.parseInt(val.strip());
+                        if (depth < 1) throw new NumberFormatException();
+                        Config.get().setChatHistoryDepth(depth);
+                        depthField.setTextColor(16777215);
+                    } catch (NumberFormatException ignored) {
+                        depthField.setTextColor(16711680);
+                    }
+                });
+                depthField.setValue(String.valueOf(Config.get().getChatHistoryDepth()));
+                depthField.setTooltip(tooltip);
+                elements.add(depthField);
+            }
+        }
+
+        private static class LookEntry extends Entry {
+            LookEntry(int x, int width, int height) {
+                super();
+                int fieldWidth = (width - SPACING * 2) / 6;
+                int buttonWidth = (width - fieldWidth - SPACING * 2) / 2;
+                int labelWidth = width - fieldWidth - buttonWidth - SPACING * 2;
+                Tooltip rangeTooltip = Tooltip.create(
+                        localized("option", "main.look.range.tooltip"));
+
+                CycleButton<Boolean> fluidsButton = CycleButton.booleanBuilder(
+                                CommonComponents.OPTION_ON.copy().withStyle(ChatFormatting.GREEN),
+                                CommonComponents.OPTION_OFF.copy().withStyle(ChatFormatting.RED))
+                        .withInitialValue(Config.get().getLookFluids())
+                        .withTooltip((status) -> Tooltip.create(
+                                localized("option", "main.look.fluids.tooltip")))
+                        .create(x, 0, buttonWidth, height,
+                                localized("option", "main.look.fluids"),
+                                (button, status) -> Config.get().setLookFluids(status));
+                fluidsButton.setTooltipDelay(Duration.ofMillis(500));
+                elements.add(fluidsButton);
+
+                Button label = Button.builder(localized("option", "main.look.range"), 
+                                (button -> {}))
+                        .pos(x + buttonWidth + SPACING, 0)
+                        .size(labelWidth, height)
+                        .build();
+                label.active = false;
+                label.setTooltip(rangeTooltip);
+                elements.add(label);
+
+                // Range field
+                EditBox rangeField = new EditBox(Minecraft.getInstance().font,
+                        x + width - fieldWidth, 0, fieldWidth, height, Component.empty());
+                rangeField.setMaxLength(5);
+                rangeField.setResponder((val) -> {
+                    try {
+                        int range = Integer.parseInt(val.strip());
+                        if (range < 0) throw new NumberFormatException();
+                        Config.get().setLookRange(range);
+                        rangeField.setTextColor(16777215);
+                    } catch (NumberFormatException ignored) {
+                        rangeField.setTextColor(16711680);
+                    }
+                });
+                rangeField.setValue(String.valueOf(Config.get().getLookRange()));
+                rangeField.setTooltip(rangeTooltip);
+                elements.add(rangeField);
+            }
+        }
     }
 }
@@ -100,6 +100,12 @@ public abstract class OptionList extends ContainerObjectSelectionList<OptionList
 
     protected abstract OptionList reload(int width, int height, double scrollAmount);
 
+    /**
+     * Commits any edits held by the entries, before the list is replaced or
+     * the screen is closed.
+     */
+    public void commitEdits() {}
+
     public abstract boolean keyPressed(InputConstants.Key key);
     public abstract boolean keyReleased(InputConstants.Key key);
     public abstract boolean mouseClicked(InputConstants.Key key);
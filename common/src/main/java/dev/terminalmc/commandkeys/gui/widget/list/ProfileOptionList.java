@@ -267,7 +267,7 @@ public class ProfileOptionList extends MacroBindList {
                         messageFieldWidth, height, Component.empty());
                 messageField.setMaxLength(256);
                 messageField.setValue(editableField
-                        ? messages.getFirst().string
+                        ? messages.getFirst().getString()
                         : getEditButtonLabel(macro, messageFieldWidth - 10));
                 messageField.setResponder(editableField
                         ? (val) -> macro.setMessage(0, val.stripLeading())
@@ -349,7 +349,7 @@ public class ProfileOptionList extends MacroBindList {
             private String getEditButtonLabel(Macro macro, int maxWidth) {
                 Font font = Minecraft.getInstance().font;
                 List<String> strings = new ArrayList<>();
-                for (Message msg : macro.getMessages()) strings.add(msg.string);
+                for (Message msg : macro.getMessages()) strings.add(msg.getString());
                 int excess = strings.size() - 1;
                 String tag = String.format(" [+%d]", excess);
                 String trimTag = String.format("... [+%d]", excess);
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.mixin.chat;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+import net.minecraft.client.GuiMessageTag;
+import net.minecraft.client.gui.components.ChatComponent;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MessageSignature;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ChatComponent.class)
+public class MixinChatComponent {
+    /**
+     * Capture of received messages and sent message history for chat 
+     * placeholders.
+     */
+    @Inject(
+            method = "addMessage(Lnet/minecraft/network/chat/Component;Lnet/minecraft/network/chat/MessageSignature;Lnet/minecraft/client/GuiMessageTag;)V",
+            at = @At("HEAD")
+    )
+    private void captureMessage(Component message, @Nullable MessageSignature signature, 
+                                @Nullable GuiMessageTag tag, CallbackInfo ci) {
+        CommandKeys.onChatMessage(message);
+    }
+
+    @Inject(
+            method = "addRecentChat",
+            at = @At("HEAD")
+    )
+    private void captureRecentChat(String message, CallbackInfo ci) {
+        CommandKeys.onHistoryChanged();
+    }
+
+    @Inject(
+            method = "clearMessages",
+            at = @At("HEAD")
+    )
+    private void clearMessages(boolean clearSentMsgHistory, CallbackInfo ci) {
+        CommandKeys.onChatCleared();
+        if (clearSentMsgHistory) CommandKeys.onHistoryChanged();
+    }
+}
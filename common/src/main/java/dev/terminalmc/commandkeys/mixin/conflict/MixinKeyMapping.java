@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.mixin.conflict;
+
+import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.util.KeyMappingIndex;
+import net.minecraft.client.KeyMapping;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(KeyMapping.class)
+public class MixinKeyMapping {
+    /**
+     * Invalidates {@link KeyMappingIndex} when a key mapping is rebound.
+     */
+    @Inject(
+            method = "setKey",
+            at = @At("TAIL")
+    )
+    private void invalidateOnSetKey(InputConstants.Key key, CallbackInfo ci) {
+        KeyMappingIndex.invalidate();
+    }
+
+    /**
+     * Invalidates {@link KeyMappingIndex} when the key mapping table is reset.
+     */
+    @Inject(
+            method = "resetMapping",
+            at = @At("TAIL")
+    )
+    private static void invalidateOnReset(CallbackInfo ci) {
+        KeyMappingIndex.invalidate();
+    }
+}
@@ -20,17 +20,36 @@ import com.llamalad7.mixinextras.injector.wrapmethod.WrapMethod;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.util.KeyState;
 import dev.terminalmc.commandkeys.util.KeybindUtil;
 import net.minecraft.client.KeyboardHandler;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(KeyboardHandler.class)
 public class MixinKeyboardHandler {
     @Unique
     private static boolean commandKeys$cancelCharTyped;
 
+    /**
+     * Records the key state change in {@link KeyState} before the keypress is
+     * handled, and passes key presses to {@link KeybindUtil#handleSequenceKey}.
+     */
+    @Inject(
+            method = "keyPress",
+            at = @At("HEAD")
+    )
+    private void trackKeyState(long windowPointer, int key, int scanCode, int action,
+                               int modifiers, CallbackInfo ci) {
+        KeyState.onKey(key, scanCode, action);
+        if (action == InputConstants.PRESS) {
+            KeybindUtil.handleSequenceKey(InputConstants.getKey(key, scanCode));
+        }
+    }
+
     /**
      * Passes keypress to {@link KeybindUtil#handleKey} and allows it to be
      * cancelled before being passed to the Minecraft callback.
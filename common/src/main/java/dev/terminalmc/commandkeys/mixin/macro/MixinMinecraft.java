@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.mixin.macro;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+import net.minecraft.client.Minecraft;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(Minecraft.class)
+public class MixinMinecraft {
+    /**
+     * Passes each frame to {@link CommandKeys#onFrame}, allowing sub-tick
+     * scheduling.
+     */
+    @Inject(
+            method = "runTick",
+            at = @At("HEAD")
+    )
+    private void onRunTick(boolean renderLevel, CallbackInfo ci) {
+        CommandKeys.onFrame((Minecraft)(Object)this);
+    }
+}
@@ -19,13 +19,32 @@ package dev.terminalmc.commandkeys.mixin.macro;
 import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
 import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.util.KeyState;
 import dev.terminalmc.commandkeys.util.KeybindUtil;
 import net.minecraft.client.MouseHandler;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(MouseHandler.class)
 public class MixinMouseHandler {
+    /**
+     * Records the button state change in {@link KeyState} before the press is
+     * handled, and passes presses to {@link KeybindUtil#handleSequenceKey}.
+     */
+    @Inject(
+            method = "onPress",
+            at = @At("HEAD")
+    )
+    private void trackButtonState(long windowPointer, int button, int action, int modifiers,
+                                  CallbackInfo ci) {
+        KeyState.onMouseButton(button, action);
+        if (action == InputConstants.PRESS) {
+            KeybindUtil.handleSequenceKey(InputConstants.Type.MOUSE.getOrCreate(button));
+        }
+    }
+
     /**
      * Passes mouse button press to {@link KeybindUtil#handleKey} and allows it
      * to be cancelled before being passed to the Minecraft callback.
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.mixin.ratelimit;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+import net.minecraft.client.multiplayer.chat.ChatListener;
+import net.minecraft.network.chat.Component;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ChatListener.class)
+public class MixinChatListener {
+    /**
+     * Detection of server throttle warnings for the adaptive ratelimit.
+     */
+    @Inject(
+            method = "handleSystemMessage",
+            at = @At("HEAD")
+    )
+    private void checkThrottleMessage(Component message, boolean overlay, CallbackInfo ci) {
+        if (!overlay) CommandKeys.onSystemMessage(message);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.mixin.ratelimit;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientCommonPacketListenerImpl;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.protocol.common.ClientboundDisconnectPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientCommonPacketListenerImpl.class)
+public class MixinClientCommonPacketListenerImpl {
+    /**
+     * Detection of spam kicks for the adaptive ratelimit. The packet may be
+     * handled on the network thread, so the check is deferred to the client
+     * thread.
+     */
+    @Inject(
+            method = "handleDisconnect",
+            at = @At("HEAD")
+    )
+    private void checkDisconnectReason(ClientboundDisconnectPacket packet, CallbackInfo ci) {
+        Component reason = packet.reason();
+        Minecraft.getInstance().execute(() -> CommandKeys.onDisconnect(reason));
+    }
+}
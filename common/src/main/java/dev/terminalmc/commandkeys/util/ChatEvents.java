@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.contents.TranslatableContents;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Records typed events from chat messages as they are received, so that 
+ * placeholders based on the latest event of a type can be resolved without
+ * searching chat history.
+ */
+public class ChatEvents {
+    /**
+     * The type of a recorded event, and the translation keys from which it 
+     * is recognized.
+     */
+    public enum Type {
+        /**
+         * A private message was received. The value is the sender name.
+         */
+        PM_INCOMING("commands.message.display.incoming"),
+        /**
+         * A private message was sent. The value is the recipient name.
+         */
+        PM_OUTGOING("commands.message.display.outgoing"),
+        /**
+         * A player joined the server. The value is the player name.
+         */
+        PLAYER_JOINED("multiplayer.player.joined", "multiplayer.player.joined.renamed"),
+        /**
+         * A player left the server. The value is the player name.
+         */
+        PLAYER_LEFT("multiplayer.player.left");
+
+        private final String[] keys;
+
+        Type(String... keys) {
+            this.keys = keys;
+        }
+    }
+
+    private final String[] values = new String[Type.values().length];
+
+    /**
+     * Records the event of {@code message} if it is of a recognized type.
+     */
+    public void onMessage(Component message) {
+        if (!(message.getContents() instanceof TranslatableContents contents)) return;
+        String key = contents.getKey();
+        for (Type type : Type.values()) {
+            for (String typeKey : type.keys) {
+                if (key.equals(typeKey)) {
+                    Object[] args = contents.getArgs();
+                    if (args.length > 0) record(type, argString(args[0]));
+                    return;
+                }
+            }
+        }
+    }
+
+    public void record(Type type, String value) {
+        values[type.ordinal()] = value;
+    }
+
+    /**
+     * @return the value of the latest event of {@code type}, or {@code null}
+     * if there is none.
+     */
+    public @Nullable String getLast(Type type) {
+        return values[type.ordinal()];
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+    }
+
+    private static String argString(Object arg) {
+        return arg instanceof Component component ? component.getString() : String.valueOf(arg);
+    }
+}
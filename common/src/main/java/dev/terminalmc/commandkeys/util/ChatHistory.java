@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import net.minecraft.network.chat.Component;
+
+import java.util.Arrays;
+
+/**
+ * A bounded ring buffer of recently received chat messages, each flattened 
+ * to plain text once when received, so that placeholders can search recent
+ * chat without flattening components on every evaluation.
+ *
+ * <p>Messages are indexed from newest (0) to oldest.</p>
+ */
+public class ChatHistory {
+    private String[] texts = new String[0];
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Sets the number of messages kept, keeping the newest messages that 
+     * fit.
+     */
+    public void setDepth(int depth) {
+        if (depth == texts.length) return;
+        String[] newTexts = new String[depth];
+        int kept = Math.min(size, depth);
+        // Copy oldest-first so that the newest message is at the head
+        for (int i = kept - 1, j = 0; i >= 0; i--, j++) {
+            newTexts[j] = getText(i);
+        }
+        texts = newTexts;
+        size = kept;
+        head = depth == 0 ? 0 : kept % depth;
+    }
+
+    public int getDepth() {
+        return texts.length;
+    }
+
+    /**
+     * Adds {@code message} as the newest message, discarding the oldest if 
+     * full.
+     */
+    public void add(Component message) {
+        if (texts.length == 0) return;
+        texts[head] = message.getString();
+        head = (head + 1) % texts.length;
+        if (size < texts.length) size++;
+    }
+
+    public void clear() {
+        Arrays.fill(texts, null);
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the plain text of the message at {@code index}, counting from
+     * the newest.
+     */
+    public String getText(int index) {
+        return texts[slot(index)];
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return Math.floorMod(head - 1 - index, texts.length);
+    }
+}
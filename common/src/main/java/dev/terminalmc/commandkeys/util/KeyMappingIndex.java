@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.mixin.accessor.KeyMappingAccessor;
+import net.minecraft.client.KeyMapping;
+import net.minecraft.client.Minecraft;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reverse index of Minecraft {@link KeyMapping} instances by bound key, used
+ * to check for conflicts without scanning all key mappings.
+ *
+ * <p>The index is invalidated whenever a key mapping is rebound or the
+ * vanilla mapping table is reset (see
+ * {@link dev.terminalmc.commandkeys.mixin.conflict.MixinKeyMapping}), and
+ * when the key mapping array is replaced, and is rebuilt on the next lookup.
+ * </p>
+ */
+public class KeyMappingIndex {
+    private static final KeyMapping[] EMPTY = new KeyMapping[0];
+    private static final Map<InputConstants.Key, KeyMapping[]> INDEX = new HashMap<>();
+    private static @Nullable KeyMapping[] indexedMappings = null;
+    private static boolean valid = false;
+
+    /**
+     * Marks the index as outdated, to be rebuilt on the next lookup.
+     */
+    public static void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * @return all key mappings bound to {@code key}, in options order. The
+     * returned array must not be modified.
+     */
+    public static KeyMapping[] get(InputConstants.Key key) {
+        validate();
+        return INDEX.getOrDefault(key, EMPTY);
+    }
+
+    /**
+     * @return the first key mapping bound to {@code key}, or {@code null} if
+     * there is none.
+     */
+    public static @Nullable KeyMapping getFirst(InputConstants.Key key) {
+        KeyMapping[] mappings = get(key);
+        return mappings.length == 0 ? null : mappings[0];
+    }
+
+    private static void validate() {
+        KeyMapping[] mappings = Minecraft.getInstance().options.keyMappings;
+        if (valid && mappings == indexedMappings) return;
+
+        Map<InputConstants.Key, List<KeyMapping>> bound = new HashMap<>();
+        for (KeyMapping keyMapping : mappings) {
+            bound.computeIfAbsent(((KeyMappingAccessor)keyMapping).getKey(),
+                    (key) -> new ArrayList<>()).add(keyMapping);
+        }
+        INDEX.clear();
+        bound.forEach((key, list) -> INDEX.put(key, list.toArray(EMPTY)));
+        indexedMappings = mappings;
+        valid = true;
+    }
+}
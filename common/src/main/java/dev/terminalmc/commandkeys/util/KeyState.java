@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.config.DispatchTable;
+
+import java.util.Arrays;
+
+/**
+ * Tracks which keys and mouse buttons are held, using the input events passed
+ * through {@link dev.terminalmc.commandkeys.mixin.macro.MixinKeyboardHandler}
+ * and {@link dev.terminalmc.commandkeys.mixin.macro.MixinMouseHandler}, so
+ * that held keys can be checked without polling GLFW.
+ *
+ * <p>Keys are recorded by key code where available, else by scancode,
+ * matching {@link InputConstants#getKey(int, int)}. A sorted list of the
+ * packed codes of held keys (see {@link DispatchTable#pack}) is also kept, for
+ * chord matching.</p>
+ */
+public class KeyState {
+    private static final int RELEASE = 0;
+    private static final int MAX_CODE = 512;
+
+    private static final long[] KEYSYMS = new long[MAX_CODE / 64];
+    private static final long[] SCANCODES = new long[MAX_CODE / 64];
+    private static final long[] MOUSE_BUTTONS = new long[1];
+    private static final int[] HELD = new int[32];
+    private static int heldCount = 0;
+
+    public static void onKey(int keyCode, int scanCode, int action) {
+        if (keyCode != InputConstants.UNKNOWN.getValue()) {
+            set(KEYSYMS, InputConstants.Type.KEYSYM, keyCode, action != RELEASE);
+        } else {
+            set(SCANCODES, InputConstants.Type.SCANCODE, scanCode, action != RELEASE);
+        }
+    }
+
+    public static void onMouseButton(int button, int action) {
+        set(MOUSE_BUTTONS, InputConstants.Type.MOUSE, button, action != RELEASE);
+    }
+
+    /**
+     * @return the number of held keys.
+     */
+    public static int heldCount() {
+        return heldCount;
+    }
+
+    /**
+     * @return the packed code of the held key at {@code index}, in ascending
+     * order of code.
+     */
+    public static int held(int index) {
+        return HELD[index];
+    }
+
+    /**
+     * @return {@code true} if {@code key} is currently held, {@code false}
+     * otherwise.
+     */
+    public static boolean isDown(InputConstants.Key key) {
+        return isDown(DispatchTable.pack(key));
+    }
+
+    /**
+     * @param code the packed code of the key (see {@link DispatchTable#pack}).
+     * @return {@code true} if the key is currently held, {@code false}
+     * otherwise.
+     */
+    public static boolean isDown(int code) {
+        if (code == DispatchTable.NONE) return false;
+        int value = DispatchTable.valueOf(code);
+        return switch(DispatchTable.typeOf(code)) {
+            case KEYSYM -> get(KEYSYMS, value);
+            case SCANCODE -> get(SCANCODES, value);
+            case MOUSE -> get(MOUSE_BUTTONS, value);
+        };
+    }
+
+    private static void set(long[] bits, InputConstants.Type type, int index, boolean down) {
+        if (index < 0 || index >= bits.length * 64) return;
+        if (get(bits, index) == down) return;
+        if (down) bits[index >>> 6] |= 1L << index;
+        else bits[index >>> 6] &= ~(1L << index);
+
+        int code = DispatchTable.pack(type, index);
+        int pos = Arrays.binarySearch(HELD, 0, heldCount, code);
+        if (down && pos < 0 && heldCount < HELD.length) {
+            pos = -pos - 1;
+            System.arraycopy(HELD, pos, HELD, pos + 1, heldCount - pos);
+            HELD[pos] = code;
+            heldCount++;
+        } else if (!down && pos >= 0) {
+            System.arraycopy(HELD, pos + 1, HELD, pos, heldCount - pos - 1);
+            heldCount--;
+        }
+    }
+
+    private static boolean get(long[] bits, int index) {
+        if (index < 0 || index >= bits.length * 64) return false;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+}
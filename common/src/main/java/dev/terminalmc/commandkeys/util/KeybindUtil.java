@@ -17,10 +17,13 @@
 package dev.terminalmc.commandkeys.util;
 
 import com.mojang.blaze3d.platform.InputConstants;
+import dev.terminalmc.commandkeys.CommandKeys;
+import dev.terminalmc.commandkeys.config.Config;
+import dev.terminalmc.commandkeys.config.DispatchTable;
 import dev.terminalmc.commandkeys.config.Keybind;
 import dev.terminalmc.commandkeys.config.Macro;
 import dev.terminalmc.commandkeys.config.Profile;
-import dev.terminalmc.commandkeys.mixin.accessor.KeyMappingAccessor;
+import dev.terminalmc.commandkeys.config.SequenceAutomaton;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.KeyMapping;
 import net.minecraft.client.Minecraft;
@@ -28,7 +31,9 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 
 import static dev.terminalmc.commandkeys.CommandKeys.canTrigger;
@@ -49,20 +54,97 @@ public class KeybindUtil {
      * @return the number of macros activated.
      */
     public static int handleKeys(InputConstants.Key key, InputConstants.Key limitKey) {
-        if (key.equals(InputConstants.UNKNOWN)) return 0;
-        if (!profile().keybindMap.containsKey(key)) return 0;
-        
-        int i = 0;
-        Collection<Keybind> keybinds = profile().keybindMap.get(key);
-        for (Keybind keybind : keybinds) {
-            if (!keybind.getLimitKey().equals(limitKey)) continue;
-            for (Macro macro : profile().macroMap.get(keybind)) {
-                macro.trigger(keybind);
-                i++;
+        return handleKeys(key, List.of(limitKey));
+    }
+
+    /**
+     * Allows other mods to activate chord macros.
+     * 
+     * @param key the primary key.
+     * @param limitKeys the limit keys, in any order.
+     * @return the number of macros activated, or 0 if activations are being
+     * refused (see {@link KeybindUtil#getSendQueueRemaining()}).
+     */
+    public static int handleKeys(InputConstants.Key key, Collection<InputConstants.Key> limitKeys) {
+        if (CommandKeys.isSendQueueRejecting()) return 0;
+        int code = DispatchTable.pack(key);
+        if (code == DispatchTable.NONE) return 0;
+        int[] limitCodes = new Keybind(key, limitKeys).getLimitKeys().stream()
+                .mapToInt(DispatchTable::pack).toArray();
+        DispatchTable table = profile().dispatchTable();
+        int group = table.find(code, limitCodes);
+        if (group == DispatchTable.NONE) return 0;
+        return activateGroup(table, group);
+    }
+
+    /**
+     * Activates every keybind in {@code group} of {@code table}, without 
+     * ratelimit or conflict checks.
+     * @return the number of macros activated.
+     */
+    public static int activateGroup(DispatchTable table, int group) {
+        int count = 0;
+        toggledGroups.clear();
+        for (int slot = table.slotStart(group), end = table.slotEnd(group); slot < end; slot++) {
+            if (activate(table.getMacro(slot), table.getKeybind(slot))) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Allows other mods to check for backpressure before activating macros.
+     * 
+     * @return the number of messages that can be sent or queued before the 
+     * send queue overflows, or {@link Integer#MAX_VALUE} if messages are not 
+     * being queued. If this is 0 and the overflow policy is 
+     * {@link SendQueue.OverflowPolicy#REJECT}, {@link KeybindUtil#handleKeys}
+     * will activate nothing.
+     */
+    public static int getSendQueueRemaining() {
+        return CommandKeys.getSendQueueRemaining();
+    }
+
+    /**
+     * Allows other mods to enable or disable a group of macros in the active
+     * profile.
+     * @return {@code true} if the group exists, {@code false} otherwise.
+     */
+    public static boolean setGroupEnabled(String group, boolean enabled) {
+        return profile().setGroupEnabled(group, enabled);
+    }
+
+    /**
+     * Allows other mods to toggle a group of macros in the active profile.
+     * @return {@code true} if the group exists, {@code false} otherwise.
+     */
+    public static boolean toggleGroup(String group) {
+        return profile().toggleGroup(group);
+    }
+
+    /**
+     * Groups toggled by the current key-press, so that a group having several
+     * {@link Keybind.Role#TOGGLE_GROUP} keybinds on the same key is toggled 
+     * only once.
+     */
+    private static final List<String> toggledGroups = new ArrayList<>();
+
+    /**
+     * Activates {@code macro} via {@code keybind}, toggling the group of the
+     * macro if the keybind has role {@link Keybind.Role#TOGGLE_GROUP}.
+     * @return {@code true} if the macro or its group was activated, 
+     * {@code false} if the macro is disabled.
+     */
+    private static boolean activate(Macro macro, Keybind keybind) {
+        if (keybind.getRole().equals(Keybind.Role.TOGGLE_GROUP)) {
+            if (!toggledGroups.contains(macro.getGroup())) {
+                toggledGroups.add(macro.getGroup());
+                profile().toggleGroup(macro);
             }
+            return true;
         }
-        
-        return i;
+        if (!profile().isEnabled(macro)) return false;
+        macro.trigger(keybind);
+        return true;
     }
 
     /**
@@ -72,72 +154,112 @@ public class KeybindUtil {
      * 2 -> KeyboardHandler#charTyped and KeyMapping#click.
      */
     public static int handleKey(InputConstants.Key key) {
+        if (Minecraft.getInstance().screen != null) return 0;
+        int code = DispatchTable.pack(key);
+        if (code == DispatchTable.NONE) return 0;
+        
+        // Get the keybind group matching the pressed key, preferencing 
+        // limited keybinds
+        Profile profile = profile();
+        DispatchTable table = profile.dispatchTable();
+        int group = table.resolve(code, true, profile);
+        if (group == DispatchTable.NONE) return 0;
+        
         int cancel = 0;
-
-        if (Minecraft.getInstance().screen == null && profile().keybindMap.containsKey(key)) {
-            // Get all keybinds matching the pressed key
-            Collection<Keybind> keybinds = profile().keybindMap.get(key);
-            Keybind triggerKb = null;
-            Keybind monoKb = null;
+        boolean first = true;
+        boolean ratelimited = false;
+        boolean conflictChecked = false;
+        boolean conflict = false;
+        toggledGroups.clear();
+        
+        for (int slot = table.slotStart(group), end = table.slotEnd(group); slot < end; slot++) {
+            Macro.ConflictStrategy strategy = table.getStrategy(slot);
+            if (strategy == AVOID) continue;
+            Macro macro = table.getMacro(slot);
+            Keybind keybind = table.getKeybind(slot);
+            boolean toggle = keybind.getRole().equals(Keybind.Role.TOGGLE_GROUP);
+            // Disabled macros neither send nor cancel
+            if (!toggle && !profile.isEnabled(macro)) continue;
+            boolean send = true;
             
-            Collection<Macro> activeMacros = null;
-            for (Keybind kb : keybinds) {
-                if (kb.isLimitKeyDown()) {
-                    // Preference limited keybinds
-                    triggerKb = kb;
-                    activeMacros = profile().macroMap.get(triggerKb).stream()
-                            .filter((macro) -> !macro.getStrategy().equals(AVOID))
-                            .toList();
-                    if (!activeMacros.isEmpty()) break;
-                } else if (kb.getLimitKey().equals(InputConstants.UNKNOWN)) {
-                    // Save for use if no limited keybinds found
-                    monoKb = kb;
+            switch(strategy) {
+                case SUBMIT -> {
+                    if (!conflictChecked) {
+                        conflict = getConflict(key) != null;
+                        conflictChecked = true;
+                    }
+                    send = !conflict;
                 }
-            }
-            if (activeMacros == null || activeMacros.isEmpty()) {
-                triggerKb = monoKb;
-                if (triggerKb == null) return cancel;
-                activeMacros = profile().macroMap.get(triggerKb).stream()
-                        .filter((macro) -> !macro.getStrategy().equals(AVOID))
-                        .toList();
-                if (activeMacros.isEmpty()) return cancel;
+                case VETO -> cancel = 2;
             }
             
-            boolean first = true;
-            boolean ratelimited = false;
-            
-            for (Macro macro : activeMacros) {
-                boolean send = true;
-                
-                switch(macro.getStrategy()) {
-                    case SUBMIT -> send = getConflict(key) == null;
-                    case VETO -> cancel = 2;
+            if (send && toggle) {
+                activate(macro, keybind);
+            } else if (send) {
+                if (first) {
+                    ratelimited = !macro.ignoreRatelimit && !canTrigger(key);
+                    first = false;
                 }
+                // Always allow repeat-stop
+                if (ratelimited && !macro.hasRepeating()) continue;
                 
-                if (send) {
-                    if (first) {
-                        ratelimited = !macro.ignoreRatelimit && !canTrigger(key);
-                        first = false;
-                    }
-                    // Always allow repeat-stop
-                    if (ratelimited && !macro.hasRepeating()) continue;
-                    
-                    macro.trigger(triggerKb);
-                    if (cancel == 0 && macro.getMode().equals(TYPE)) cancel = 1;
-                }
+                macro.trigger(keybind);
+                if (cancel == 0 && macro.getMode().equals(TYPE)) cancel = 1;
             }
         }
 
         return cancel;
     }
 
-    public static @Nullable KeyMapping getConflict(InputConstants.Key key) {
-        for (KeyMapping keyMapping : Minecraft.getInstance().options.keyMappings) {
-            if (((KeyMappingAccessor)keyMapping).getKey().equals(key)) {
-                return keyMapping;
+    /**
+     * Advances the {@link SequenceAutomaton} of the active profile by a press
+     * of {@code key}, activating any macros whose sequence is completed.
+     */
+    public static void handleSequenceKey(InputConstants.Key key) {
+        if (Minecraft.getInstance().screen != null) return;
+        int code = DispatchTable.pack(key);
+        if (code == DispatchTable.NONE) return;
+        SequenceAutomaton automaton = profile().sequenceAutomaton();
+        int state = automaton.step(code);
+        if (state != SequenceAutomaton.NONE) triggerSequence(automaton, state);
+        state = automaton.pollPending();
+        if (state != SequenceAutomaton.NONE) triggerSequence(automaton, state);
+    }
+
+    /**
+     * Advances the timeout of the {@link SequenceAutomaton} of the active 
+     * profile, activating any macros whose sequence is completed.
+     */
+    public static void tickSequences() {
+        SequenceAutomaton automaton = profile().sequenceAutomaton();
+        int state = automaton.tick(Config.get().getSequenceTimeoutTicks());
+        if (state != SequenceAutomaton.NONE) triggerSequence(automaton, state);
+    }
+
+    private static void triggerSequence(SequenceAutomaton automaton, int state) {
+        boolean first = true;
+        boolean ratelimited = false;
+        for (int i = automaton.macroStart(state), end = automaton.macroEnd(state); i < end; i++) {
+            Macro macro = automaton.getMacro(i);
+            if (!profile().isEnabled(macro)) continue;
+            if (first) {
+                ratelimited = !macro.ignoreRatelimit 
+                        && !canTrigger(macro.getSequence().getKeys().getLast());
+                first = false;
             }
+            // Always allow repeat-stop
+            if (ratelimited && !macro.hasRepeating()) continue;
+            
+            macro.trigger(null);
         }
-        return null;
+    }
+
+    /**
+     * @return the first Minecraft {@link KeyMapping} bound to {@code key}, or
+     * {@code null} if there is none.
+     */
+    public static @Nullable KeyMapping getConflict(InputConstants.Key key) {
+        return KeyMappingIndex.getFirst(key);
     }
     
     public static class KeybindInfo {
@@ -152,11 +274,12 @@ public class KeybindUtil {
         public KeybindInfo(Profile profile, Macro macro, Keybind keybind) {
             this.profile = profile;
             this.macro = macro;
-            this.label = keybind.getLimitKey().equals(InputConstants.UNKNOWN) 
-                    ? keybind.getKey().getDisplayName().copy()
-                    : keybind.getLimitKey().getDisplayName().copy().append(" + ")
-                            .append(keybind.getKey().getDisplayName());
-            checkConflict(keybind.getLimitKey(), null);
+            this.label = Component.empty();
+            for (InputConstants.Key limitKey : keybind.getLimitKeys()) {
+                label.append(limitKey.getDisplayName()).append(" + ");
+                checkConflict(limitKey, null);
+            }
+            label.append(keybind.getKey().getDisplayName());
             checkConflict(keybind.getKey(), keybind);
             createConflictLabel();
         }
@@ -253,4 +376,20 @@ public class KeybindUtil {
         return localized("option", "key.mode."
                 + mode.toString().toLowerCase(Locale.ROOT) + ".tooltip");
     }
+
+    public static Component localizeRole(Keybind.Role role) {
+        return localized("option", "key.role."
+                + role.toString().toLowerCase(Locale.ROOT))
+                .withStyle(switch(role) {
+                    case TRIGGER -> ChatFormatting.GREEN;
+                    case REVERSE -> ChatFormatting.DARK_AQUA;
+                    case STOP -> ChatFormatting.RED;
+                    case TOGGLE_GROUP -> ChatFormatting.LIGHT_PURPLE;
+                });
+    }
+
+    public static Component localizeRoleTooltip(Keybind.Role role) {
+        return localized("option", "key.role."
+                + role.toString().toLowerCase(Locale.ROOT) + ".tooltip");
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+/**
+ * A message parsed once into a sequence of literal and placeholder 
+ * {@link Segment}s, so that it can be rendered in a single pass without 
+ * re-scanning the message for each placeholder.
+ *
+ * <p>Templates are immutable, and are created by 
+ * {@link PlaceholderUtil#compile} and rendered by 
+ * {@link PlaceholderUtil#replace}.</p>
+ */
+public final class MessageTemplate {
+    private static final Segment[] NONE = new Segment[0];
+
+    private final String source;
+    private final Segment[] segments;
+
+    MessageTemplate(String source, Segment[] segments) {
+        this.source = source;
+        this.segments = segments;
+    }
+
+    /**
+     * @return a template of {@code source} with no placeholders.
+     */
+    public static MessageTemplate literal(String source) {
+        return new MessageTemplate(source, NONE);
+    }
+
+    /**
+     * @return a template of {@code source}, parsed for placeholders.
+     */
+    public static MessageTemplate of(String source) {
+        return PlaceholderUtil.compile(source);
+    }
+
+    /**
+     * @return the unparsed message.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return {@code true} if the message contains no placeholders, and so 
+     * renders as its source, {@code false} otherwise.
+     */
+    public boolean isLiteral() {
+        return segments.length == 0;
+    }
+
+    Segment[] getSegments() {
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * A part of a message, appending its rendered value to the result of a
+     * {@link PlaceholderContext}.
+     */
+    interface Segment {
+        void render(PlaceholderContext ctx);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Schedules {@link Task} instances with millisecond resolution, independent
+ * of the client tick rate.
+ *
+ * <p>Due times are tracked by a dedicated daemon thread, which hands each due
+ * task to the client thread via a lock-free queue. The client thread runs 
+ * ready tasks when {@link MillisScheduler#drain} is called, once per frame.
+ * Each task runs once per scheduling.</p>
+ */
+public class MillisScheduler {
+    private static final ConcurrentLinkedQueue<Task> incoming = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<Task> ready = new ConcurrentLinkedQueue<>();
+    private static Thread thread;
+
+    /**
+     * A task to be run on the client thread.
+     */
+    public abstract static class Task {
+        // Only accessed by the timer thread after scheduling
+        private long dueNanos;
+        private volatile boolean cancelled = false;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Called on the client thread when the task is due.
+         */
+        protected abstract void run();
+    }
+
+    /**
+     * Schedules {@code task} to run once after {@code delayMillis}
+     * milliseconds. A task can only be scheduled again once it has run.
+     */
+    public static void schedule(Task task, long delayMillis) {
+        scheduleAt(task, System.nanoTime() + Math.max(0, delayMillis) * 1_000_000L);
+    }
+
+    /**
+     * Schedules {@code task} to run when {@link System#nanoTime()} reaches
+     * {@code dueNanos}.
+     * @see MillisScheduler#schedule
+     */
+    public static void scheduleAt(Task task, long dueNanos) {
+        task.dueNanos = dueNanos;
+        incoming.add(task);
+        LockSupport.unpark(thread());
+    }
+
+    /**
+     * Prevents any further runs of {@code task}. May be called from any 
+     * thread.
+     */
+    public static void cancel(Task task) {
+        task.cancelled = true;
+    }
+
+    /**
+     * Runs ready tasks until none remain or the 
+     * {@link CommandKeys#tickBudget} is spent, leaving the rest for the next
+     * call. Must be called on the client thread.
+     */
+    public static void drain() {
+        Task task;
+        while (!CommandKeys.tickBudget.isSpent() && (task = ready.poll()) != null) {
+            if (!task.cancelled) task.run();
+        }
+    }
+
+    private static synchronized Thread thread() {
+        if (thread == null) {
+            thread = new Thread(MillisScheduler::loop, CommandKeys.MOD_NAME + " Scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return thread;
+    }
+
+    private static void loop() {
+        PriorityQueue<Task> pending = new PriorityQueue<>(
+                (a, b) -> Long.compare(a.dueNanos, b.dueNanos));
+        while (true) {
+            Task task;
+            while ((task = incoming.poll()) != null) {
+                if (!task.cancelled) pending.add(task);
+            }
+            long now = System.nanoTime();
+            while (!pending.isEmpty() && pending.peek().dueNanos - now <= 0) {
+                task = pending.poll();
+                if (!task.cancelled) ready.add(task);
+            }
+            if (pending.isEmpty()) LockSupport.park();
+            else LockSupport.parkNanos(pending.peek().dueNanos - now);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A bounded cache of compiled {@link Pattern}s keyed by source, evicting the
+ * least recently used pattern when full.
+ *
+ * <p>Sources which fail to compile are cached as well, so that an invalid 
+ * regex is compiled and reported only once while it remains cached. Only 
+ * used on the client thread.</p>
+ */
+public class PatternCache {
+    private final Map<String, Entry> entries;
+
+    private record Entry(@Nullable Pattern pattern) {}
+
+    /**
+     * @param capacity the maximum number of cached sources.
+     */
+    public PatternCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the compiled pattern of {@code regex}, or {@code null} if it 
+     * is invalid. The error is logged when the source is first compiled.
+     */
+    public @Nullable Pattern get(String regex) {
+        Entry entry = entries.get(regex);
+        if (entry == null) {
+            try {
+                entry = new Entry(Pattern.compile(regex));
+            } catch (PatternSyntaxException e) {
+                CommandKeys.LOG.warn("Invalid regex in placeholder: " + e);
+                entry = new Entry(null);
+            }
+            entries.put(regex, entry);
+        }
+        return entry.pattern;
+    }
+}
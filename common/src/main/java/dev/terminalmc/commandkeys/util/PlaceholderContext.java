@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import dev.terminalmc.commandkeys.CommandKeys;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The state of a placeholder evaluation, holding the rendered message and 
+ * the number of faults.
+ *
+ * <p>World lookups are taken from {@link CommandKeys#worldState}, which is
+ * shared by all messages sent in the same tick, so a context must only be 
+ * used on the client thread.</p>
+ */
+public class PlaceholderContext {
+    final StringBuilder builder = new StringBuilder();
+    private int faults = 0;
+
+    /**
+     * Prepares to render a new message.
+     */
+    void begin() {
+        builder.setLength(0);
+        faults = 0;
+    }
+
+    /**
+     * Records a fault.
+     * @return the value substituted for the faulty placeholder.
+     */
+    String fault() {
+        faults++;
+        return "?";
+    }
+
+    public boolean hasFault() {
+        return faults != 0;
+    }
+
+    public int getFaults() {
+        return faults;
+    }
+
+    /**
+     * @return the last rendered message.
+     */
+    public String getResult() {
+        return builder.toString();
+    }
+
+    @Nullable BlockPos getPlayerBlockPos() {
+        return CommandKeys.worldState.getPlayerBlockPos();
+    }
+
+    @Nullable BlockPos getLookBlockPos() {
+        return CommandKeys.worldState.getLookBlockPos();
+    }
+
+    @Nullable Vec3 getLookAngle() {
+        return CommandKeys.worldState.getLookAngle();
+    }
+}
@@ -16,159 +16,416 @@
 
 package dev.terminalmc.commandkeys.util;
 
-import com.mojang.datafixers.util.Pair;
 import dev.terminalmc.commandkeys.CommandKeys;
-import dev.terminalmc.commandkeys.mixin.accessor.ChatComponentAccessor;
-import net.minecraft.client.GuiMessage;
 import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
-import net.minecraft.network.chat.Component;
-import net.minecraft.network.chat.MutableComponent;
-import net.minecraft.network.chat.contents.TranslatableContents;
 import net.minecraft.util.ArrayListDeque;
 import net.minecraft.util.Mth;
-import net.minecraft.world.phys.BlockHitResult;
-import net.minecraft.world.phys.HitResult;
 import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 public class PlaceholderUtil {
 
-    private static int faults;
-    private static @Nullable BlockPos playerBlockPos;
-    private static @Nullable BlockPos lookBlockPos;
-    private static @Nullable Vec3 lookAngle;
-    private static @Nullable String pmSenderName;
+    /**
+     * Compiled regex arguments of placeholders.
+     */
+    private static final PatternCache PATTERNS = new PatternCache(64);
+
+    /**
+     * The period for which the value of a placeholder remains valid, so that
+     * it is evaluated at most once per period however many messages use it.
+     */
+    public enum Scope {
+        /**
+         * Evaluated for each occurrence.
+         */
+        SEND,
+        /**
+         * Evaluated once per client tick.
+         */
+        TICK,
+        /**
+         * Evaluated once until a chat message is received or the chat is 
+         * cleared.
+         */
+        CHAT,
+        /**
+         * Evaluated once until a message is added to the sent message 
+         * history.
+         */
+        HISTORY,
+    }
+
+    /**
+     * The first of a range of private-use characters standing in for the 
+     * {@link #SIMPLE_PLACEHOLDERS} while a message is compiled.
+     */
+    private static final char MARK = '\uE000';
+
+    private static long chatVersion = 0;
+    private static long historyVersion = 0;
 
     private static final SimplePlaceholder[] SIMPLE_PLACEHOLDERS = {
-            new SimplePlaceholder("%lastsent%", PlaceholderUtil::getLastMessage),
-            new SimplePlaceholder("%lastcmd%", PlaceholderUtil::getLastCommand),
-            new SimplePlaceholder("%clipboard%", () -> getClipboard(null)),
-            new SimplePlaceholder("%myname%", PlaceholderUtil::getPlayerName),
-            new SimplePlaceholder("%pmsender%", PlaceholderUtil::getPmSenderName),
-            new SimplePlaceholder("%pos%", () -> getPlayerBlockPos(new String[]{"0", "0"})),
-            new SimplePlaceholder("%x%", () -> getPlayerBlockX(new String[]{"0"})),
-            new SimplePlaceholder("%y%", () -> getPlayerBlockY(new String[]{"0"})),
-            new SimplePlaceholder("%z%", () -> getPlayerBlockZ(new String[]{"0"})),
-            new SimplePlaceholder("%lpos%", () -> getLookBlockPos(new String[]{"0", "0"})),
-            new SimplePlaceholder("%lx%", () -> getLookBlockX(new String[]{"0"})),
-            new SimplePlaceholder("%ly%", () -> getLookBlockY(new String[]{"0"})),
-            new SimplePlaceholder("%lz%", () -> getLookBlockZ(new String[]{"0"})),
+            new SimplePlaceholder("%lastsent%", Scope.HISTORY, PlaceholderUtil::getLastMessage),
+            new SimplePlaceholder("%lastcmd%", Scope.HISTORY, PlaceholderUtil::getLastCommand),
+            new SimplePlaceholder("%clipboard%", Scope.TICK, (ctx) -> getClipboard(ctx, null)),
+            new SimplePlaceholder("%myname%", Scope.TICK, PlaceholderUtil::getPlayerName),
+            new SimplePlaceholder("%pmsender%", Scope.CHAT, PlaceholderUtil::getPmSenderName),
+            new SimplePlaceholder("%pmtarget%", Scope.CHAT, PlaceholderUtil::getPmTargetName),
+            new SimplePlaceholder("%lastjoined%", Scope.CHAT, PlaceholderUtil::getLastJoined),
+            new SimplePlaceholder("%lastleft%", Scope.CHAT, PlaceholderUtil::getLastLeft),
+            new SimplePlaceholder("%pos%", Scope.SEND,
+                    (ctx) -> getPlayerBlockPos(ctx, new String[]{"0", "0"})),
+            new SimplePlaceholder("%x%", Scope.SEND,
+                    (ctx) -> getPlayerBlockX(ctx, new String[]{"0"})),
+            new SimplePlaceholder("%y%", Scope.SEND,
+                    (ctx) -> getPlayerBlockY(ctx, new String[]{"0"})),
+            new SimplePlaceholder("%z%", Scope.SEND,
+                    (ctx) -> getPlayerBlockZ(ctx, new String[]{"0"})),
+            new SimplePlaceholder("%lpos%", Scope.SEND,
+                    (ctx) -> getLookBlockPos(ctx, new String[]{"0", "0"})),
+            new SimplePlaceholder("%lx%", Scope.SEND,
+                    (ctx) -> getLookBlockX(ctx, new String[]{"0"})),
+            new SimplePlaceholder("%ly%", Scope.SEND,
+                    (ctx) -> getLookBlockY(ctx, new String[]{"0"})),
+            new SimplePlaceholder("%lz%", Scope.SEND,
+                    (ctx) -> getLookBlockZ(ctx, new String[]{"0"})),
     };
 
     private static final Placeholder[] REGEX_PLACEHOLDERS = {
-            new Placeholder(Pattern.compile("%#(.*)%"), 1, PlaceholderUtil::getRecentChat),
-            new Placeholder(Pattern.compile("%clipboard#(.*)%"), 1, PlaceholderUtil::getClipboard),
-            new Placeholder(Pattern.compile("%pos([FBLR])(\\d+)%"), 2, PlaceholderUtil::getPlayerBlockPos),
-            new Placeholder(Pattern.compile("%x([+-]\\d+)%"), 1, PlaceholderUtil::getPlayerBlockX),
-            new Placeholder(Pattern.compile("%y([+-]\\d+)%"), 1, PlaceholderUtil::getPlayerBlockY),
-            new Placeholder(Pattern.compile("%z([+-]\\d+)%"), 1, PlaceholderUtil::getPlayerBlockZ),
-            new Placeholder(Pattern.compile("%lpos([FBLR])(\\d+)%"), 2, PlaceholderUtil::getLookBlockPos),
-            new Placeholder(Pattern.compile("%lx([+-]\\d+)%"), 1, PlaceholderUtil::getLookBlockX),
-            new Placeholder(Pattern.compile("%ly([+-]\\d+)%"), 1, PlaceholderUtil::getLookBlockY),
-            new Placeholder(Pattern.compile("%lz([+-]\\d+)%"), 1, PlaceholderUtil::getLookBlockZ),
+            new Placeholder(Pattern.compile("%#(.*)%"), 1, true, Scope.CHAT,
+                    PlaceholderUtil::getRecentChat),
+            new Placeholder(Pattern.compile("%clipboard#(.*)%"), 1, true, Scope.TICK,
+                    PlaceholderUtil::getClipboard),
+            new Placeholder(Pattern.compile("%pos([FBLR])(\\d+)%"), 2, false, Scope.SEND,
+                    PlaceholderUtil::getPlayerBlockPos),
+            new Placeholder(Pattern.compile("%x([+-]\\d+)%"), 1, false, Scope.SEND,
+                    PlaceholderUtil::getPlayerBlockX),
+            new Placeholder(Pattern.compile("%y([+-]\\d+)%"), 1, false, Scope.SEND,
+                    PlaceholderUtil::getPlayerBlockY),
+            new Placeholder(Pattern.compile("%z([+-]\\d+)%"), 1, false, Scope.SEND,
+                    PlaceholderUtil::getPlayerBlockZ),
+            new Placeholder(Pattern.compile("%lpos([FBLR])(\\d+)%"), 2, false, Scope.SEND,
+                    PlaceholderUtil::getLookBlockPos),
+            new Placeholder(Pattern.compile("%lx([+-]\\d+)%"), 1, false, Scope.SEND,
+                    PlaceholderUtil::getLookBlockX),
+            new Placeholder(Pattern.compile("%ly([+-]\\d+)%"), 1, false, Scope.SEND,
+                    PlaceholderUtil::getLookBlockY),
+            new Placeholder(Pattern.compile("%lz([+-]\\d+)%"), 1, false, Scope.SEND,
+                    PlaceholderUtil::getLookBlockZ),
     };
 
     /**
-     * Breaks if player is not in-game. Does not self-check for performance
-     * reasons, but expects caller to validate.
+     * Renders {@code template} in a single pass into {@code ctx}, stopping at
+     * the first fault. The result is available from 
+     * {@link PlaceholderContext#getResult}.
+     * 
+     * <p>Breaks if player is not in-game. Does not self-check for performance
+     * reasons, but expects caller to validate.</p>
+     * @return {@code true} if the message was rendered without faults, 
+     * {@code false} otherwise.
+     */
+    public static boolean replace(MessageTemplate template, PlaceholderContext ctx) {
+        ctx.begin();
+        if (template.isLiteral()) {
+            ctx.builder.append(template.getSource());
+            return true;
+        }
+        for (MessageTemplate.Segment segment : template.getSegments()) {
+            segment.render(ctx);
+            if (ctx.hasFault()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Ends the validity of placeholder values of {@code scope}, for scopes 
+     * ended by an event.
+     */
+    public static void invalidate(Scope scope) {
+        switch(scope) {
+            case CHAT -> chatVersion++;
+            case HISTORY -> historyVersion++;
+            default -> {}
+        }
+    }
+
+    /**
+     * Compiles the regex arguments of the placeholders of {@code template},
+     * so that invalid regexes are reported before the message is sent.
+     * @return {@code true} if all regex arguments are valid, {@code false}
+     * otherwise.
+     */
+    public static boolean prepare(MessageTemplate template) {
+        boolean valid = true;
+        for (MessageTemplate.Segment segment : template.getSegments()) {
+            // Arguments containing simple placeholders are checked on render
+            if (segment instanceof Match match && match.placeholder.regexArg
+                    && !match.dynamic && PATTERNS.get(match.args[0]) == null) {
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Parses {@code message} into a {@link MessageTemplate}.
+     * 
+     * <p>Simple placeholders are first replaced by {@link #MARK} characters,
+     * then each regex placeholder is matched in turn within the remaining
+     * literal text, and finally the marks are split out of the literal text.
+     * A regex placeholder may thus contain simple placeholders, such as 
+     * {@code %#%myname%: (.*)%}, which are expanded when the message is
+     * rendered. The result is the same as replacing each placeholder in 
+     * order, except that placeholder values are not themselves parsed for 
+     * placeholders.</p>
      */
-    public static Pair<String,Integer> replace(String message) {
-        if (!message.contains("%")) return new Pair<>(message, 0);
-        reset();
-        for (SimplePlaceholder p : SIMPLE_PLACEHOLDERS) message = p.process(message);
-        for (Placeholder p : REGEX_PLACEHOLDERS) message = p.process(message);
+    public static MessageTemplate compile(String message) {
+        if (message.indexOf('%') == -1) return MessageTemplate.literal(message);
+        String marked = message;
+        for (int i = 0; i < SIMPLE_PLACEHOLDERS.length; i++) {
+            marked = marked.replace(SIMPLE_PLACEHOLDERS[i].string, String.valueOf((char)(MARK + i)));
+        }
+        // Literal parts are held as strings until all placeholders are found
+        List<Object> parts = new ArrayList<>();
+        parts.add(marked);
+        for (Placeholder p : REGEX_PLACEHOLDERS) parts = p.split(parts);
+        parts = splitMarks(parts);
+        if (parts.size() == 1 && parts.getFirst() instanceof String) {
+            return MessageTemplate.literal(message);
+        }
+        MessageTemplate.Segment[] segments = new MessageTemplate.Segment[parts.size()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = parts.get(i) instanceof String literal
+                    ? new Literal(literal)
+                    : (MessageTemplate.Segment)parts.get(i);
+        }
+        return new MessageTemplate(message, segments);
+    }
 
-        return new Pair<>(message, faults);
+    /**
+     * @return {@code parts} with each {@link #MARK} character in the literal
+     * parts replaced by its simple placeholder.
+     */
+    private static List<Object> splitMarks(List<Object> parts) {
+        List<Object> result = new ArrayList<>(parts.size());
+        for (Object part : parts) {
+            if (!(part instanceof String literal)) {
+                result.add(part);
+                continue;
+            }
+            int start = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int index = markIndex(literal.charAt(i));
+                if (index == -1) continue;
+                if (i > start) result.add(literal.substring(start, i));
+                result.add(SIMPLE_PLACEHOLDERS[index]);
+                start = i + 1;
+            }
+            if (start < literal.length()) result.add(literal.substring(start));
+        }
+        return result;
     }
 
-    private static void reset() {
-        faults = 0;
-        playerBlockPos = null;
-        lookBlockPos = null;
-        lookAngle = null;
-        pmSenderName = null;
+    /**
+     * @return the index of the simple placeholder marked by {@code c}, or 
+     * {@code -1} if {@code c} is not a mark.
+     */
+    private static int markIndex(char c) {
+        int index = c - MARK;
+        return index >= 0 && index < SIMPLE_PLACEHOLDERS.length ? index : -1;
     }
-    
-    private static String fault() {
-        faults++;
-        return "?";
+
+    private static boolean hasMark(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (markIndex(string.charAt(i)) != -1) return true;
+        }
+        return false;
     }
 
-    private record SimplePlaceholder(String string, Supplier<String> supplier) {
-        public String process(String message) {
-            if (!message.contains(string)) return message;
-            String replacement = supplier.get();
-            return message.replaceAll(string, replacement);
+    private record Literal(String string) implements MessageTemplate.Segment {
+        @Override
+        public void render(PlaceholderContext ctx) {
+            ctx.builder.append(string);
         }
     }
 
-    private record Placeholder(Pattern pattern, int groups, Function<String[], String> operator) {
-        public String process(String message) {
-            Matcher matcher = pattern.matcher(message);
-            while (true) {
-                if (!matcher.find()) return message;
-                String[] args = new String[groups];
-                for (int i = 0; i < args.length; i++) args[i] = matcher.group(i + 1);
-                message = matcher.replaceFirst(operator.apply(args));
+    /**
+     * The last value of a placeholder and the period in which it was 
+     * evaluated. Only used on the client thread.
+     */
+    private static class Memo {
+        private long stamp = Long.MIN_VALUE;
+        private String value;
+
+        /**
+         * @return the value of {@code operator}, evaluating it only if the 
+         * memoized value is not valid in the current period of 
+         * {@code scope}. Values evaluated with a fault are not memoized.
+         */
+        String get(Scope scope, PlaceholderContext ctx, Function<PlaceholderContext, String> operator) {
+            long now = switch(scope) {
+                case SEND -> Long.MIN_VALUE;
+                case TICK -> CommandKeys.getTickCount();
+                case CHAT -> chatVersion;
+                case HISTORY -> historyVersion;
+            };
+            if (now == Long.MIN_VALUE) return operator.apply(ctx);
+            if (stamp == now) return value;
+            int faults = ctx.getFaults();
+            String result = operator.apply(ctx);
+            if (ctx.getFaults() == faults) {
+                stamp = now;
+                value = result;
             }
+            return result;
         }
     }
 
-    // Incoming message
+    private record SimplePlaceholder(String string, Scope scope, 
+                                     Function<PlaceholderContext, String> supplier, Memo memo) 
+            implements MessageTemplate.Segment {
+        SimplePlaceholder(String string, Scope scope, Function<PlaceholderContext, String> supplier) {
+            this(string, scope, supplier, new Memo());
+        }
+
+        String value(PlaceholderContext ctx) {
+            return memo.get(scope, ctx, supplier);
+        }
 
-    private static String getRecentChat(@NotNull String[] pattern) {
-        try {
-            Pattern regex = Pattern.compile(pattern[0]);
-
-            int i = 0;
-            for (GuiMessage guiMsg : ((ChatComponentAccessor)
-                    Minecraft.getInstance().gui.getChat()).getAllMessages()) {
-                if (++i > 50) break;
-
-                Matcher matcher = regex.matcher(guiMsg.content().getString());
-                if (matcher.find()) {
-                    try {
-                        return matcher.group(1);
-                    } catch (IndexOutOfBoundsException e) {
-                        CommandKeys.LOG.error("Recent chat placeholder failed: Group 1 not available: " + e);
-                        return fault();
+        @Override
+        public void render(PlaceholderContext ctx) {
+            ctx.builder.append(value(ctx));
+        }
+    }
+
+    /**
+     * @param regexArg whether the first argument is a regex, to be compiled
+     * via {@link #PATTERNS}.
+     */
+    private record Placeholder(Pattern pattern, int groups, boolean regexArg, Scope scope,
+                               BiFunction<PlaceholderContext, String[], String> operator) {
+        /**
+         * @return {@code parts} with each match of this placeholder in the
+         * literal parts split out.
+         */
+        public List<Object> split(List<Object> parts) {
+            List<Object> result = new ArrayList<>(parts.size());
+            for (Object part : parts) {
+                if (!(part instanceof String literal)) {
+                    result.add(part);
+                    continue;
+                }
+                Matcher matcher = pattern.matcher(literal);
+                int start = 0;
+                while (matcher.find()) {
+                    if (matcher.start() > start) result.add(literal.substring(start, matcher.start()));
+                    String[] args = new String[groups];
+                    boolean dynamic = false;
+                    for (int i = 0; i < args.length; i++) {
+                        args[i] = matcher.group(i + 1);
+                        dynamic |= hasMark(args[i]);
                     }
+                    result.add(new Match(this, args, dynamic, new Memo()));
+                    start = matcher.end();
                 }
+                if (start < literal.length()) result.add(literal.substring(start));
             }
+            return result;
+        }
+    }
+
+    /**
+     * @param dynamic whether the arguments contain simple placeholders, in
+     * which case the value is not memoized.
+     */
+    private record Match(Placeholder placeholder, String[] args, boolean dynamic, Memo memo) 
+            implements MessageTemplate.Segment {
+        @Override
+        public void render(PlaceholderContext ctx) {
+            if (dynamic) {
+                String[] values = expand(ctx);
+                if (ctx.hasFault()) return;
+                ctx.builder.append(placeholder.operator.apply(ctx, values));
+            } else if (placeholder.scope.equals(Scope.SEND)) {
+                ctx.builder.append(placeholder.operator.apply(ctx, args));
+            } else {
+                ctx.builder.append(memo.get(placeholder.scope, ctx, 
+                        (c) -> placeholder.operator.apply(c, args)));
+            }
+        }
+
+        /**
+         * @return the arguments with each {@link #MARK} character replaced by
+         * the value of its simple placeholder.
+         */
+        private String[] expand(PlaceholderContext ctx) {
+            String[] values = new String[args.length];
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                StringBuilder value = new StringBuilder(arg.length());
+                for (int j = 0; j < arg.length(); j++) {
+                    int index = markIndex(arg.charAt(j));
+                    if (index == -1) {
+                        value.append(arg.charAt(j));
+                    } else {
+                        value.append(SIMPLE_PLACEHOLDERS[index].value(ctx));
+                    }
+                }
+                values[i] = value.toString();
+            }
+            return values;
+        }
+    }
+
+    // Incoming message
+
+    private static String getRecentChat(PlaceholderContext ctx, @NotNull String[] pattern) {
+        // Invalid regex is logged once by the cache
+        Pattern regex = PATTERNS.get(pattern[0]);
+        if (regex == null) return ctx.fault();
 
-            CommandKeys.LOG.warn("Recent chat placeholder failed: No message found: Checked " + i);
-        } catch (PatternSyntaxException e) {
-            CommandKeys.LOG.error("Recent chat placeholder failed: Invalid regex: " + e);
+        ChatHistory history = CommandKeys.chatHistory;
+        int i = 0;
+        for (; i < history.size(); i++) {
+            Matcher matcher = regex.matcher(history.getText(i));
+            if (matcher.find()) {
+                try {
+                    return matcher.group(1);
+                } catch (IndexOutOfBoundsException e) {
+                    CommandKeys.LOG.error("Recent chat placeholder failed: Group 1 not available: " + e);
+                    return ctx.fault();
+                }
+            }
         }
 
-        return fault();
+        CommandKeys.LOG.warn("Recent chat placeholder failed: No message found: Checked " + i);
+        return ctx.fault();
     }
 
     // Clipboard
 
-    private static String getClipboard(@Nullable String[] pattern) {
+    private static String getClipboard(PlaceholderContext ctx, @Nullable String[] pattern) {
         String clipboard = Minecraft.getInstance().keyboardHandler.getClipboard();
         if (clipboard.isEmpty()) {
             CommandKeys.LOG.warn("Clipboard placeholder failed: No data");
-            return fault();
+            return ctx.fault();
         }
         if (pattern != null) {
-            try {
-                if (!Pattern.compile(pattern[0]).matcher(clipboard).find()) {
-                    CommandKeys.LOG.warn("Clipboard placeholder failed: Non-matching regex");
-                    return fault();
-                }
-            } catch (PatternSyntaxException e) {
-                CommandKeys.LOG.warn("Clipboard placeholder failed: Invalid regex: " + e);
-                return fault();
+            // Invalid regex is logged once by the cache
+            Pattern regex = PATTERNS.get(pattern[0]);
+            if (regex == null) return ctx.fault();
+            if (!regex.matcher(clipboard).find()) {
+                CommandKeys.LOG.warn("Clipboard placeholder failed: Non-matching regex");
+                return ctx.fault();
             }
         }
         return clipboard;
@@ -176,130 +433,120 @@ public class PlaceholderUtil {
 
     // Message history
 
-    private static String getLastMessage() {
+    private static String getLastMessage(PlaceholderContext ctx) {
         String lastMsg = Minecraft.getInstance().gui.getChat().getRecentChat().peekLast();
-        if (lastMsg == null) return fault();
+        if (lastMsg == null) return ctx.fault();
         return lastMsg;
     }
 
-    private static String getLastCommand() {
+    private static String getLastCommand(PlaceholderContext ctx) {
         if (Minecraft.getInstance().commandHistory().history() instanceof ArrayListDeque<String> deque) {
             String lastCmd = deque.peekLast();
             if (lastCmd != null) return lastCmd;
         } else {
             CommandKeys.LOG.error("Command history not ArrayListDeque");
         }
-        return fault();
+        return ctx.fault();
     }
 
     // Player name
 
-    private static String getPlayerName() {
+    private static String getPlayerName(PlaceholderContext ctx) {
         return Minecraft.getInstance().player.getName().getString();
     }
 
-    // Incoming private message sender
+    // Private messages
 
-    private static String getPmSenderName() {
-        if (pmSenderName != null) return pmSenderName;
-        int i = 0;
-        for (GuiMessage guiMsg : ((ChatComponentAccessor)
-                Minecraft.getInstance().gui.getChat()).getAllMessages()) {
-            if (++i > 50) break;
-            Component msg = guiMsg.content();
-            if (msg.getContents() instanceof TranslatableContents tc
-                    && tc.getKey().contains("commands.message.display.incoming")) {
-                pmSenderName = ((MutableComponent)tc.getArgs()[0]).getString();
-                break;
-            }
-        }
-        if (pmSenderName == null) {
-            CommandKeys.LOG.warn("PmSenderName placeholder failed: No message found: Checked " + i);
-            return fault();
-        }
-        return pmSenderName;
+    private static String getPmSenderName(PlaceholderContext ctx) {
+        return getLastEvent(ctx, ChatEvents.Type.PM_INCOMING);
     }
 
-    // Player position
+    private static String getPmTargetName(PlaceholderContext ctx) {
+        return getLastEvent(ctx, ChatEvents.Type.PM_OUTGOING);
+    }
 
-    private static BlockPos updatePlayerBlockPos() {
-        if (playerBlockPos == null)
-            playerBlockPos = Minecraft.getInstance().player.blockPosition();
-        return playerBlockPos;
-    }
-
-    private static BlockPos updateLookBlockPos() {
-        // Note: ProjectileUtil.getEntityHitResult for entities
-        if (lookBlockPos == null) {
-            Minecraft mc = Minecraft.getInstance();
-            // Distance is arbitrary but will do for now
-            HitResult result = mc.player.pick(Math.max(384, 
-                    (mc.levelRenderer.getLastViewDistance() + 1D) * 16), 0.0F, false);
-            if (result.getType().equals(HitResult.Type.BLOCK)) {
-                lookBlockPos = ((BlockHitResult)result).getBlockPos();
-            }
-        }
-        return lookBlockPos;
+    // Player join and leave
+
+    private static String getLastJoined(PlaceholderContext ctx) {
+        return getLastEvent(ctx, ChatEvents.Type.PLAYER_JOINED);
     }
 
-    private static Vec3 updateLookAngle() {
-        if (lookAngle == null)
-            lookAngle = Minecraft.getInstance().player.getLookAngle();
-        return lookAngle;
+    private static String getLastLeft(PlaceholderContext ctx) {
+        return getLastEvent(ctx, ChatEvents.Type.PLAYER_LEFT);
     }
 
-    private static String getPlayerBlockPos(String[] args) {
-        if (updatePlayerBlockPos() == null || updateLookAngle() == null) return fault();
-        int offset = Integer.parseInt(args[1]);
-        Vec3 playerPos = playerBlockPos.getBottomCenter();
-        if (offset != 0) playerPos = offsetCardinalDirection(
-                playerPos, lookAngle, args[0], offset);
-        return String.format("%d %d %d", Mth.floor(playerPos.x),
-                Mth.floor(playerPos.y), Mth.floor(playerPos.z));
+    private static String getLastEvent(PlaceholderContext ctx, ChatEvents.Type type) {
+        String value = CommandKeys.chatEvents.getLast(type);
+        if (value == null) {
+            CommandKeys.LOG.warn("Chat event placeholder failed: No {} event found", type);
+            return ctx.fault();
+        }
+        return value;
     }
 
-    private static String getPlayerBlockX(String[] offset) {
-        if (updatePlayerBlockPos() == null) return fault();
-        return String.valueOf(Mth.floor(playerBlockPos.getX()) + Integer.parseInt(offset[0]));
+    // Player position
+
+    private static String getPlayerBlockPos(PlaceholderContext ctx, String[] args) {
+        BlockPos pos = ctx.getPlayerBlockPos();
+        Vec3 angle = ctx.getLookAngle();
+        if (pos == null || angle == null) return ctx.fault();
+        return formatOffsetPos(pos, angle, args);
     }
 
-    private static String getPlayerBlockY(String[] offset) {
-        if (updatePlayerBlockPos() == null) return fault();
-        return String.valueOf(Mth.floor(playerBlockPos.getY()) + Integer.parseInt(offset[0]));
+    private static String getPlayerBlockX(PlaceholderContext ctx, String[] offset) {
+        BlockPos pos = ctx.getPlayerBlockPos();
+        if (pos == null) return ctx.fault();
+        return String.valueOf(Mth.floor(pos.getX()) + Integer.parseInt(offset[0]));
     }
 
-    private static String getPlayerBlockZ(String[] offset) {
-        if (updatePlayerBlockPos() == null) return fault();
-        return String.valueOf(Mth.floor(playerBlockPos.getZ()) + Integer.parseInt(offset[0]));
+    private static String getPlayerBlockY(PlaceholderContext ctx, String[] offset) {
+        BlockPos pos = ctx.getPlayerBlockPos();
+        if (pos == null) return ctx.fault();
+        return String.valueOf(Mth.floor(pos.getY()) + Integer.parseInt(offset[0]));
     }
 
-    private static String getLookBlockPos(String[] args) {
-        if (updateLookBlockPos() == null || updateLookAngle() == null) return fault();
-        int offset = Integer.parseInt(args[1]);
-        Vec3 playerPos = lookBlockPos.getBottomCenter();
-        if (offset != 0) playerPos = offsetCardinalDirection(
-                playerPos, lookAngle, args[0], offset);
-        return String.format("%d %d %d", Mth.floor(playerPos.x),
-                Mth.floor(playerPos.y), Mth.floor(playerPos.z));
+    private static String getPlayerBlockZ(PlaceholderContext ctx, String[] offset) {
+        BlockPos pos = ctx.getPlayerBlockPos();
+        if (pos == null) return ctx.fault();
+        return String.valueOf(Mth.floor(pos.getZ()) + Integer.parseInt(offset[0]));
     }
 
-    private static String getLookBlockX(String[] offset) {
-        if (updateLookBlockPos() == null) return fault();
-        return String.valueOf(Mth.floor(lookBlockPos.getX()) + Integer.parseInt(offset[0]));
+    private static String getLookBlockPos(PlaceholderContext ctx, String[] args) {
+        BlockPos pos = ctx.getLookBlockPos();
+        Vec3 angle = ctx.getLookAngle();
+        if (pos == null || angle == null) return ctx.fault();
+        return formatOffsetPos(pos, angle, args);
     }
 
-    private static String getLookBlockY(String[] offset) {
-        if (updateLookBlockPos() == null) return fault();
-        return String.valueOf(Mth.floor(lookBlockPos.getY()) + Integer.parseInt(offset[0]));
+    private static String getLookBlockX(PlaceholderContext ctx, String[] offset) {
+        BlockPos pos = ctx.getLookBlockPos();
+        if (pos == null) return ctx.fault();
+        return String.valueOf(Mth.floor(pos.getX()) + Integer.parseInt(offset[0]));
     }
 
-    private static String getLookBlockZ(String[] offset) {
-        if (updateLookBlockPos() == null) return fault();
-        return String.valueOf(Mth.floor(lookBlockPos.getZ()) + Integer.parseInt(offset[0]));
+    private static String getLookBlockY(PlaceholderContext ctx, String[] offset) {
+        BlockPos pos = ctx.getLookBlockPos();
+        if (pos == null) return ctx.fault();
+        return String.valueOf(Mth.floor(pos.getY()) + Integer.parseInt(offset[0]));
+    }
+
+    private static String getLookBlockZ(PlaceholderContext ctx, String[] offset) {
+        BlockPos pos = ctx.getLookBlockPos();
+        if (pos == null) return ctx.fault();
+        return String.valueOf(Mth.floor(pos.getZ()) + Integer.parseInt(offset[0]));
     }
 
     // Util
 
+    private static String formatOffsetPos(BlockPos pos, Vec3 facingAngle, String[] args) {
+        int offset = Integer.parseInt(args[1]);
+        Vec3 offsetPos = pos.getBottomCenter();
+        if (offset != 0) offsetPos = offsetCardinalDirection(
+                offsetPos, facingAngle, args[0], offset);
+        return String.format("%d %d %d", Mth.floor(offsetPos.x),
+                Mth.floor(offsetPos.y), Mth.floor(offsetPos.z));
+    }
+
     private static Vec3 offsetCardinalDirection(
             Vec3 pos, Vec3 facingAngle, String offsetDir, int offset) {
         if (Math.abs(facingAngle.x) >= Math.abs(facingAngle.z)) {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+/**
+ * An additive-increase, multiplicative-decrease (AIMD) controller of a send
+ * rate, in messages per tick.
+ *
+ * <p>Each successful send raises the rate by a fixed step, scaled by the
+ * current rate so that the rate rises by roughly {@link #INCREASE} messages
+ * per second for every second of uninterrupted sending. Each throttle signal
+ * from the server cuts the rate by {@link #DECREASE}, after which further
+ * signals are ignored for {@link #HOLD_TICKS} ticks, so that a burst of
+ * warnings caused by the same messages only counts once.</p>
+ *
+ * <p>The controller depends only on the tick counter passed to it, so it can
+ * be driven by a fake send loop in isolation from the client.</p>
+ */
+public class RateController {
+    /**
+     * Increase of the rate per second of successful sending, in messages per
+     * second.
+     */
+    public static final double INCREASE = 0.1;
+    /**
+     * Factor applied to the rate on each throttle signal.
+     */
+    public static final double DECREASE = 0.5;
+    /**
+     * Lowest rate the controller will reduce to, in messages per second.
+     */
+    public static final double MIN_RATE = 0.2;
+    /**
+     * Number of ticks after a throttle signal during which further signals
+     * are ignored and the rate is not increased.
+     */
+    public static final int HOLD_TICKS = 100;
+
+    public static final int TICKS_PER_SECOND = 20;
+
+    private double rate;
+    private double maxRate;
+    private long lastThrottle = Long.MIN_VALUE;
+
+    /**
+     * @param rate the initial rate, in messages per tick.
+     * @param maxRate the highest rate the controller will increase to, in
+     * messages per tick.
+     */
+    public RateController(double rate, double maxRate) {
+        reset(rate, maxRate);
+    }
+
+    /**
+     * Replaces the learned rate, e.g. on connecting to a different server.
+     */
+    public void reset(double rate, double maxRate) {
+        this.maxRate = Math.max(maxRate, minRate());
+        this.rate = clamp(rate);
+        this.lastThrottle = Long.MIN_VALUE;
+    }
+
+    /**
+     * Updates the highest rate, reducing the current rate if necessary.
+     */
+    public void setMaxRate(double maxRate) {
+        this.maxRate = Math.max(maxRate, minRate());
+        this.rate = clamp(rate);
+    }
+
+    /**
+     * @return the current rate, in messages per tick.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Notifies the controller of a message sent at tick {@code now}.
+     */
+    public void onSend(long now) {
+        if (isHolding(now)) return;
+        // One send takes 1/rate ticks, so scale the step to keep the increase
+        // per unit time independent of the rate.
+        double step = INCREASE / (TICKS_PER_SECOND * TICKS_PER_SECOND) / rate;
+        rate = clamp(rate + step);
+    }
+
+    /**
+     * Notifies the controller that the server indicated at tick {@code now}
+     * that messages are being sent too fast.
+     * @return {@code true} if the rate was reduced, {@code false} if the
+     * signal was ignored.
+     */
+    public boolean onThrottle(long now) {
+        if (isHolding(now)) return false;
+        rate = clamp(rate * DECREASE);
+        lastThrottle = now;
+        return true;
+    }
+
+    private boolean isHolding(long now) {
+        return lastThrottle != Long.MIN_VALUE && now - lastThrottle < HOLD_TICKS;
+    }
+
+    private double clamp(double rate) {
+        return Math.max(minRate(), Math.min(maxRate, rate));
+    }
+
+    private static double minRate() {
+        return MIN_RATE / TICKS_PER_SECOND;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+/**
+ * Limits activations to a burst rate and an optional sustained rate, without
+ * allocation.
+ *
+ * <p>The burst rate allows at most {@code count} activations in any window 
+ * of {@code ticks} ticks, using a fixed ring of activation timestamps. The
+ * sustained rate is a token bucket holding at most {@code capacity} tokens,
+ * refilled at a fractional number of tokens per tick.</p>
+ */
+public class RateLimiter {
+    // Burst limit
+    private long[] stamps = new long[0];
+    private int head = 0;
+    private int size = 0;
+    private int ticks = 1;
+
+    // Sustained limit
+    private int capacity = 0;
+    private double refill = 0;
+    private double tokens = 0;
+    private long lastRefill = 0;
+
+    /**
+     * Updates the limits, discarding recorded activations only if the burst
+     * count has changed.
+     * @param sustainedCount the number of tokens added per 
+     * {@code sustainedTicks}, or 0 to disable the sustained limit.
+     */
+    public void configure(int count, int ticks, int sustainedCount, int sustainedTicks) {
+        configure(count, ticks, sustainedCount, 
+                sustainedTicks > 0 ? (double)sustainedCount / sustainedTicks : 0);
+    }
+
+    /**
+     * Updates the limits, discarding recorded activations only if the burst
+     * count has changed.
+     * @param capacity the maximum number of stored tokens, or 0 to disable 
+     * the sustained limit.
+     * @param refill the number of tokens added per tick.
+     */
+    public void configure(int count, int ticks, int capacity, double refill) {
+        if (count != stamps.length) {
+            stamps = new long[count];
+            head = 0;
+            size = 0;
+        }
+        this.ticks = ticks;
+        if (capacity != this.capacity) {
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+        this.refill = refill;
+    }
+
+    /**
+     * @return {@code true} if an activation at tick {@code now} would exceed
+     * either limit, {@code false} otherwise.
+     */
+    public boolean isLimited(long now) {
+        expire(now);
+        if (size >= stamps.length) return true;
+        return isSustained() && tokens < 1;
+    }
+
+    /**
+     * Records an activation at tick {@code now} if it would not exceed either
+     * limit.
+     * @return {@code true} if the activation was recorded, {@code false} 
+     * otherwise.
+     */
+    public boolean tryAcquire(long now) {
+        if (isLimited(now)) return false;
+        record(now);
+        return true;
+    }
+
+    /**
+     * Records an activation at tick {@code now} regardless of the limits. If
+     * the ring is full, the oldest activation is replaced.
+     */
+    public void record(long now) {
+        expire(now);
+        if (stamps.length == 0) return;
+        if (size == stamps.length) {
+            stamps[head] = now;
+            head = (head + 1) % stamps.length;
+        } else {
+            stamps[(head + size++) % stamps.length] = now;
+        }
+        if (isSustained()) tokens = Math.max(0, tokens - 1);
+    }
+
+    /**
+     * @return the number of ticks after {@code now} until an activation would
+     * not exceed either limit.
+     */
+    public long ticksUntilAvailable(long now) {
+        if (!isLimited(now)) return 0;
+        long wait = 0;
+        if (size >= stamps.length && stamps.length > 0) {
+            wait = stamps[head] + ticks + 1 - now;
+        }
+        if (isSustained() && tokens < 1) {
+            wait = Math.max(wait, (long)Math.ceil((1 - tokens) / refill));
+        }
+        return Math.max(1, wait);
+    }
+
+    private boolean isSustained() {
+        return capacity > 0 && refill > 0;
+    }
+
+    private void expire(long now) {
+        while (size > 0 && now - stamps[head] > ticks) {
+            head = (head + 1) % stamps.length;
+            size--;
+        }
+        if (isSustained() && now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refill);
+        }
+        lastRefill = now;
+    }
+}
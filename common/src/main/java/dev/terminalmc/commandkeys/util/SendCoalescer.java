@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pipeline stage which collects the messages submitted during a tick or
+ * frame and releases them at its end, reduced to fewer messages where this
+ * does not change their meaning.
+ *
+ * <p>A message without placeholders equal to one released within the 
+ * de-duplication window is dropped. Runs of consecutive chat messages (not 
+ * commands) with the same source and options are packed into a single 
+ * message, separated by spaces, up to {@link SendCoalescer#MAX_LENGTH} 
+ * characters. Messages containing a placeholder are never packed, as their 
+ * final length is unknown.</p>
+ */
+public class SendCoalescer {
+    /**
+     * The maximum length of a chat message accepted by the server.
+     */
+    public static final int MAX_LENGTH = 256;
+
+    private final List<MessageTemplate> messages = new ArrayList<>();
+    private final List<Byte> flags = new ArrayList<>();
+    private final List<Object> sources = new ArrayList<>();
+    // Tick at which each recent message was released
+    private final Map<String, Long> recent = new HashMap<>();
+    private final StringBuilder packed = new StringBuilder(MAX_LENGTH);
+
+    private static final byte ADD_TO_HISTORY = 1;
+    private static final byte SHOW_HUD_MESSAGE = 2;
+    private static final byte IGNORE_RATELIMIT = 4;
+    private static final byte PRIORITY = 8;
+
+    /**
+     * Receives messages released by the coalescer.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void send(MessageTemplate message, boolean addToHistory, boolean showHudMsg, 
+                  boolean ignoreRatelimit, Object source, boolean priority);
+    }
+
+    public boolean isEmpty() {
+        return messages.isEmpty() && recent.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if there are collected messages awaiting 
+     * {@link #flush}, {@code false} otherwise.
+     */
+    public boolean hasPending() {
+        return !messages.isEmpty();
+    }
+
+    /**
+     * Adds a message to be released at the next {@link #flush}.
+     * @param source the identity of the sender, passed through to the sink.
+     * @param priority whether the message results directly from user input,
+     * passed through to the sink.
+     */
+    public void offer(MessageTemplate message, boolean addToHistory, boolean showHudMsg, 
+                      boolean ignoreRatelimit, Object source, boolean priority) {
+        messages.add(message);
+        flags.add((byte)((addToHistory ? ADD_TO_HISTORY : 0) 
+                | (showHudMsg ? SHOW_HUD_MESSAGE : 0)
+                | (ignoreRatelimit ? IGNORE_RATELIMIT : 0)
+                | (priority ? PRIORITY : 0)));
+        sources.add(source);
+    }
+
+    /**
+     * Releases all collected messages to {@code sink}.
+     * @param now the current tick.
+     * @param windowTicks the number of ticks for which a released message
+     * suppresses equal messages. If 0, only equal messages submitted in the
+     * same tick are suppressed.
+     */
+    public void flush(long now, int windowTicks, Sink sink) {
+        if (!recent.isEmpty()) recent.values().removeIf((tick) -> now - tick > windowTicks);
+        byte packedFlags = 0;
+        Object packedSource = null;
+        for (int i = 0; i < messages.size(); i++) {
+            MessageTemplate message = messages.get(i);
+            String string = message.getSource();
+            byte flag = flags.get(i);
+            Object source = sources.get(i);
+            if (string.isBlank()) continue;
+            // Templates may render differently each time, so are never 
+            // treated as duplicates
+            if (message.isLiteral() && recent.putIfAbsent(string, now) != null) continue;
+            if (isPackable(message)) {
+                if (!packed.isEmpty() && (flag != packedFlags || source != packedSource
+                        || packed.length() + 1 + string.length() > MAX_LENGTH)) {
+                    release(sink, packedFlags, packedSource);
+                }
+                if (!packed.isEmpty()) packed.append(' ');
+                packed.append(string);
+                packedFlags = flag;
+                packedSource = source;
+            } else {
+                if (!packed.isEmpty()) release(sink, packedFlags, packedSource);
+                release(sink, message, flag, source);
+            }
+        }
+        if (!packed.isEmpty()) release(sink, packedFlags, packedSource);
+        messages.clear();
+        flags.clear();
+        sources.clear();
+    }
+
+    /**
+     * Discards all collected messages from {@code source}.
+     */
+    public void removeSource(Object source) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (sources.get(i) == source) {
+                messages.remove(i);
+                flags.remove(i);
+                sources.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Discards all collected and recent messages.
+     */
+    public void clear() {
+        messages.clear();
+        flags.clear();
+        sources.clear();
+        recent.clear();
+        packed.setLength(0);
+    }
+
+    private static boolean isPackable(MessageTemplate message) {
+        String string = message.getSource();
+        return message.isLiteral() && !string.startsWith("/") && string.length() < MAX_LENGTH;
+    }
+
+    private void release(Sink sink, byte flag, Object source) {
+        MessageTemplate message = MessageTemplate.literal(packed.toString());
+        packed.setLength(0);
+        release(sink, message, flag, source);
+    }
+
+    private static void release(Sink sink, MessageTemplate message, byte flag, Object source) {
+        sink.send(message, (flag & ADD_TO_HISTORY) != 0, (flag & SHOW_HUD_MESSAGE) != 0,
+                (flag & IGNORE_RATELIMIT) != 0, source, (flag & PRIORITY) != 0);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue of outbound messages which interleaves the messages of 
+ * different sources, so that no source can starve the others.
+ *
+ * <p>Each source (e.g. a running macro) has its own FIFO lane. Lanes are 
+ * either priority lanes, for messages resulting directly from user input, or
+ * background lanes. Polling takes one message from each lane in turn (round-
+ * robin), taking from the priority lanes {@link SendQueue#PRIORITY_WEIGHT}
+ * times for each time it takes from the background lanes while both have 
+ * messages waiting.</p>
+ *
+ * <p>Messages are stored in a fixed pool of nodes shared by all lanes, so 
+ * that offering and polling do not allocate, and the capacity applies to the
+ * total number of queued messages. Messages evicted to make room are passed
+ * to the drop listener, so that no message is discarded silently.</p>
+ */
+public class SendQueue {
+    /**
+     * The number of messages taken from priority lanes for each message 
+     * taken from background lanes, while both are waiting.
+     */
+    public static final int PRIORITY_WEIGHT = 4;
+
+    private static final byte ADD_TO_HISTORY = 1;
+    private static final byte SHOW_HUD_MESSAGE = 2;
+    private static final int NONE = -1;
+
+    // Node pool
+    private MessageTemplate[] messages;
+    private byte[] flags;
+    private long[] seqs;
+    private int[] next;
+    private int free;
+    private int size = 0;
+    private long nextSeq = 0;
+
+    // Lanes with queued messages
+    private final Map<Object, Lane> lanes = new IdentityHashMap<>();
+    private final ArrayDeque<Lane> priorityLanes = new ArrayDeque<>();
+    private final ArrayDeque<Lane> backgroundLanes = new ArrayDeque<>();
+    private int priorityStreak = 0;
+
+    private final Consumer<MessageTemplate> dropListener;
+
+    private static class Lane {
+        final Object source;
+        final boolean priority;
+        int head = NONE;
+        int tail = NONE;
+
+        Lane(Object source, boolean priority) {
+            this.source = source;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Determines the handling of a message offered to a full queue.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The oldest queued message is discarded to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * The offered message is discarded.
+         */
+        DROP_NEWEST,
+        /**
+         * The offered message is discarded, and new activations are refused
+         * while the queue is full.
+         */
+        REJECT,
+    }
+
+    /**
+     * Receives messages polled from the queue.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void send(MessageTemplate message, boolean addToHistory, boolean showHudMsg);
+    }
+
+    /**
+     * @param dropListener receives each queued message which is evicted to 
+     * make room, under {@link OverflowPolicy#DROP_OLDEST} or when the 
+     * capacity is reduced.
+     */
+    public SendQueue(int capacity, Consumer<MessageTemplate> dropListener) {
+        this.dropListener = dropListener;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        messages = new MessageTemplate[capacity];
+        flags = new byte[capacity];
+        seqs = new long[capacity];
+        next = new int[capacity];
+        for (int i = 0; i < capacity; i++) next[i] = i + 1 < capacity ? i + 1 : NONE;
+        free = capacity > 0 ? 0 : NONE;
+    }
+
+    /**
+     * Sets the capacity of the queue, keeping the newest messages that fit.
+     */
+    public void setCapacity(int capacity) {
+        if (capacity == messages.length) return;
+        while (size > capacity) dropOldest();
+        // Re-pack each lane into the new pool
+        MessageTemplate[] oldMessages = messages;
+        byte[] oldFlags = flags;
+        long[] oldSeqs = seqs;
+        int[] oldNext = next;
+        allocate(capacity);
+        size = 0;
+        for (Lane lane : lanes.values()) {
+            int node = lane.head;
+            lane.head = NONE;
+            lane.tail = NONE;
+            while (node != NONE) {
+                append(lane, oldMessages[node], oldFlags[node], oldSeqs[node]);
+                node = oldNext[node];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return messages.length;
+    }
+
+    public int remaining() {
+        return messages.length - size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == messages.length;
+    }
+
+    /**
+     * Adds a message to the tail of the lane of {@code source}, applying 
+     * {@code policy} if the queue is full.
+     * @param source the identity of the lane.
+     * @param priority whether the lane is a priority lane, if the lane does
+     * not already exist.
+     * @return {@code true} if the message was queued, {@code false} if it was
+     * discarded. A message evicted to make room is passed to the drop 
+     * listener.
+     */
+    public boolean offer(MessageTemplate message, boolean addToHistory, boolean showHudMsg, 
+                         OverflowPolicy policy, Object source, boolean priority) {
+        if (messages.length == 0) return false;
+        if (isFull()) {
+            if (!policy.equals(OverflowPolicy.DROP_OLDEST)) return false;
+            dropOldest();
+        }
+        Lane lane = lanes.get(source);
+        if (lane == null) {
+            lane = new Lane(source, priority);
+            lanes.put(source, lane);
+            (priority ? priorityLanes : backgroundLanes).addLast(lane);
+        }
+        append(lane, message, (byte)((addToHistory ? ADD_TO_HISTORY : 0) 
+                | (showHudMsg ? SHOW_HUD_MESSAGE : 0)), nextSeq++);
+        return true;
+    }
+
+    /**
+     * Removes the next message according to the round-robin order and passes
+     * it to {@code sink}.
+     * @return {@code true} if a message was polled, {@code false} if the 
+     * queue was empty.
+     */
+    public boolean poll(Sink sink) {
+        if (size == 0) return false;
+        boolean usePriority = !priorityLanes.isEmpty() 
+                && (backgroundLanes.isEmpty() || priorityStreak < PRIORITY_WEIGHT);
+        priorityStreak = usePriority ? priorityStreak + 1 : 0;
+        ArrayDeque<Lane> rotation = usePriority ? priorityLanes : backgroundLanes;
+        Lane lane = rotation.pollFirst();
+        int node = lane.head;
+        MessageTemplate message = messages[node];
+        byte flag = flags[node];
+        removeHead(lane);
+        if (lane.head != NONE) rotation.addLast(lane);
+        sink.send(message, (flag & ADD_TO_HISTORY) != 0, (flag & SHOW_HUD_MESSAGE) != 0);
+        return true;
+    }
+
+    public void clear() {
+        lanes.clear();
+        priorityLanes.clear();
+        backgroundLanes.clear();
+        priorityStreak = 0;
+        allocate(messages.length);
+        size = 0;
+    }
+
+    private void append(Lane lane, MessageTemplate message, byte flag, long seq) {
+        int node = free;
+        free = next[node];
+        messages[node] = message;
+        flags[node] = flag;
+        seqs[node] = seq;
+        next[node] = NONE;
+        if (lane.tail == NONE) lane.head = node;
+        else next[lane.tail] = node;
+        lane.tail = node;
+        size++;
+    }
+
+    /**
+     * Unlinks the head node of {@code lane}, removing the lane from the map
+     * if it becomes empty. Does not modify the rotations.
+     */
+    private void removeHead(Lane lane) {
+        int node = lane.head;
+        lane.head = next[node];
+        if (lane.head == NONE) {
+            lane.tail = NONE;
+            lanes.remove(lane.source);
+        }
+        messages[node] = null;
+        next[node] = free;
+        free = node;
+        size--;
+    }
+
+    /**
+     * Discards all queued messages in the lane of {@code source}, if any.
+     * @return the number of messages discarded.
+     */
+    public int removeLane(Object source) {
+        Lane lane = lanes.get(source);
+        if (lane == null) return 0;
+        int removed = 0;
+        while (lane.head != NONE) {
+            removeHead(lane);
+            removed++;
+        }
+        (lane.priority ? priorityLanes : backgroundLanes).remove(lane);
+        return removed;
+    }
+
+    /**
+     * Discards the oldest queued message across all lanes, passing it to the
+     * drop listener.
+     */
+    private void dropOldest() {
+        Lane oldest = null;
+        for (Lane lane : lanes.values()) {
+            if (oldest == null || seqs[lane.head] < seqs[oldest.head]) oldest = lane;
+        }
+        if (oldest == null) return;
+        MessageTemplate message = messages[oldest.head];
+        removeHead(oldest);
+        if (oldest.head == NONE) {
+            (oldest.priority ? priorityLanes : backgroundLanes).remove(oldest);
+        }
+        dropListener.accept(message);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+/**
+ * Bounds the time spent on mod work within a single slice of the client 
+ * thread (a tick or a frame), so that a burst of expensive work is spread 
+ * over several slices instead of causing a visible hitch.
+ *
+ * <p>Work which finds the budget spent is expected to defer itself to the 
+ * next slice and call {@link #defer}. Slices which exceed the budget are 
+ * counted, along with the total and largest overrun.</p>
+ */
+public class TickBudget {
+    private long budgetNanos = 0;
+    private long start = 0;
+    private boolean active = false;
+
+    // Counters
+    private long slices = 0;
+    private long overruns = 0;
+    private long overrunNanos = 0;
+    private long maxOverrunNanos = 0;
+    private long deferred = 0;
+
+    /**
+     * Starts a new slice.
+     * @param budgetMicros the time available to the slice in microseconds, 
+     * or 0 for no limit.
+     */
+    public void begin(int budgetMicros) {
+        budgetNanos = budgetMicros * 1_000L;
+        start = System.nanoTime();
+        active = true;
+    }
+
+    /**
+     * Ends the current slice, recording any overrun.
+     */
+    public void end() {
+        if (!active) return;
+        active = false;
+        slices++;
+        if (budgetNanos <= 0) return;
+        long over = System.nanoTime() - start - budgetNanos;
+        if (over > 0) {
+            overruns++;
+            overrunNanos += over;
+            maxOverrunNanos = Math.max(maxOverrunNanos, over);
+        }
+    }
+
+    /**
+     * @return {@code true} if a slice is in progress and its budget has been
+     * used up, {@code false} otherwise.
+     */
+    public boolean isSpent() {
+        return active && budgetNanos > 0 && System.nanoTime() - start >= budgetNanos;
+    }
+
+    /**
+     * Records that a unit of work was deferred to a later slice.
+     */
+    public void defer() {
+        deferred++;
+    }
+
+    public long getSlices() {
+        return slices;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return the mean overrun of slices which exceeded the budget, in 
+     * microseconds.
+     */
+    public long getMeanOverrunMicros() {
+        return overruns == 0 ? 0 : overrunNanos / overruns / 1_000L;
+    }
+
+    /**
+     * @return the largest overrun of any slice, in microseconds.
+     */
+    public long getMaxOverrunMicros() {
+        return maxOverrunNanos / 1_000L;
+    }
+
+    public long getDeferred() {
+        return deferred;
+    }
+}
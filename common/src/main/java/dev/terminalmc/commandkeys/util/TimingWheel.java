@@ -0,0 +1,188 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+/**
+ * A hierarchical timing wheel, scheduling {@link Timer} instances to expire 
+ * after a number of ticks.
+ *
+ * <p>The wheel has {@link TimingWheel#LEVELS} levels of 
+ * {@link TimingWheel#SLOTS} slots each, with each slot of a level spanning
+ * one full rotation of the level below. Timers are placed in the lowest level
+ * able to hold their deadline, and are cascaded down a level each time the
+ * level below completes a rotation, so that each tick only visits the timers
+ * which are due (plus an amortized constant number of cascades per timer).
+ * </p>
+ *
+ * <p>Timers are intrusive doubly-linked list nodes, so scheduling and 
+ * cancelling are constant-time and allocation-free.</p>
+ */
+public class TimingWheel {
+    private static final int BITS = 6;
+    public static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    public static final int LEVELS = 4;
+    /**
+     * The maximum delay that can be held without re-cascading from the top
+     * level.
+     */
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    // Sentinel head of each slot list
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    private long now = 0;
+    private int size = 0;
+
+    public TimingWheel() {
+        for (Timer[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                Timer head = new Sentinel();
+                head.prev = head;
+                head.next = head;
+                level[i] = head;
+            }
+        }
+    }
+
+    /**
+     * A node of the {@link TimingWheel}.
+     */
+    public abstract static class Timer {
+        private long deadline;
+        private Timer prev;
+        private Timer next;
+
+        /**
+         * @return {@code true} if this timer is currently scheduled, 
+         * {@code false} otherwise.
+         */
+        public boolean isScheduled() {
+            return next != null;
+        }
+
+        /**
+         * Called by {@link TimingWheel#tick} when this timer expires. The 
+         * timer may be rescheduled from within this method.
+         */
+        protected abstract void expire();
+    }
+
+    private static class Sentinel extends Timer {
+        @Override
+        protected void expire() {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * @return the number of ticks the wheel has been advanced.
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * @return the number of scheduled timers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules {@code timer} to expire after {@code delay} ticks, cancelling
+     * it first if it is already scheduled.
+     * @param delay the delay in ticks. Values less than 1 are treated as 1.
+     */
+    public void schedule(Timer timer, long delay) {
+        if (timer.isScheduled()) cancel(timer);
+        timer.deadline = now + Math.max(1, delay);
+        insert(timer);
+        size++;
+    }
+
+    /**
+     * Removes {@code timer} from the wheel, if it is scheduled.
+     */
+    public void cancel(Timer timer) {
+        if (!timer.isScheduled()) return;
+        unlink(timer);
+        size--;
+    }
+
+    /**
+     * Removes all timers from the wheel.
+     */
+    public void clear() {
+        for (Timer[] level : slots) {
+            for (Timer head : level) {
+                while (head.next != head) unlink(head.next);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Advances the wheel by one tick, expiring all timers which are due.
+     */
+    public void tick() {
+        now++;
+        // Cascade each level whose lower level has completed a rotation
+        for (int level = 1; level < LEVELS; level++) {
+            if ((now & ((1L << (BITS * level)) - 1)) != 0) break;
+            cascade(level, (int)(now >>> (BITS * level)) & MASK);
+        }
+        // Expire the current slot. Timers are unlinked one at a time so that
+        // those rescheduled by expire() are never revisited this tick.
+        Timer head = slots[0][(int)now & MASK];
+        while (head.next != head) {
+            Timer timer = head.next;
+            unlink(timer);
+            size--;
+            timer.expire();
+        }
+    }
+
+    private void cascade(int level, int index) {
+        Timer head = slots[level][index];
+        while (head.next != head) {
+            Timer timer = head.next;
+            unlink(timer);
+            insert(timer);
+        }
+    }
+
+    private void insert(Timer timer) {
+        long delta = timer.deadline - now;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) level++;
+        // Timers beyond the span of the wheel wait in the last slot reachable
+        // from the top level, and are re-inserted when cascaded
+        long deadline = delta >= SPAN ? now + SPAN - 1 : timer.deadline;
+        Timer head = slots[level][(int)(deadline >>> (BITS * level)) & MASK];
+        timer.prev = head.prev;
+        timer.next = head;
+        head.prev.next = timer;
+        head.prev = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        timer.prev.next = timer.next;
+        timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+    }
+}
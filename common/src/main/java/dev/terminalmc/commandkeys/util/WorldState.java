@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.terminalmc.commandkeys.util;
+
+import dev.terminalmc.commandkeys.config.Config;
+import net.minecraft.client.Minecraft;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.BlockHitResult;
+import net.minecraft.world.phys.HitResult;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A cache of the world lookups used by position placeholders, made on first
+ * use and kept until the end of the client tick, so that macros firing in 
+ * the same tick share a single raycast.
+ *
+ * <p>Must only be used on the client thread, with the player in-game.</p>
+ */
+public class WorldState {
+    private @Nullable BlockPos playerBlockPos;
+    private @Nullable BlockPos lookBlockPos;
+    private boolean lookBlockPosFound = false;
+    private @Nullable Vec3 lookAngle;
+
+    /**
+     * Discards all lookups, so that they are repeated on next use.
+     */
+    public void invalidate() {
+        playerBlockPos = null;
+        lookBlockPos = null;
+        lookBlockPosFound = false;
+        lookAngle = null;
+    }
+
+    public BlockPos getPlayerBlockPos() {
+        if (playerBlockPos == null)
+            playerBlockPos = Minecraft.getInstance().player.blockPosition();
+        return playerBlockPos;
+    }
+
+    /**
+     * @return the position of the block the player is looking at, within 
+     * the configured look range, or {@code null} if there is none.
+     */
+    public @Nullable BlockPos getLookBlockPos() {
+        // Note: ProjectileUtil.getEntityHitResult for entities
+        if (!lookBlockPosFound) {
+            lookBlockPos = pickBlock(Minecraft.getInstance(), Config.get());
+            lookBlockPosFound = true;
+        }
+        return lookBlockPos;
+    }
+
+    public Vec3 getLookAngle() {
+        if (lookAngle == null)
+            lookAngle = Minecraft.getInstance().player.getLookAngle();
+        return lookAngle;
+    }
+
+    private static @Nullable BlockPos pickBlock(Minecraft mc, Config config) {
+        double range = config.getLookRange() > 0
+                ? config.getLookRange()
+                : Math.max(384, (mc.levelRenderer.getLastViewDistance() + 1D) * 16);
+        // The vanilla target is the first block along the same ray, so can be
+        // reused if it is a block in range and fluids are not wanted, as 
+        // vanilla picking passes through fluids
+        if (!config.getLookFluids() && mc.hitResult instanceof BlockHitResult hit
+                && hit.getType().equals(HitResult.Type.BLOCK)
+                && hit.getLocation().distanceToSqr(mc.player.getEyePosition()) <= range * range) {
+            return hit.getBlockPos();
+        }
+        HitResult result = mc.player.pick(range, 0.0F, config.getLookFluids());
+        if (result.getType().equals(HitResult.Type.BLOCK)) {
+            return ((BlockHitResult)result).getBlockPos();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.terminalmc.commandkeys.config;
+
+import com.mojang.blaze3d.platform.InputConstants;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mojang.blaze3d.platform.InputConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceAutomatonTest {
+    private static int code(int key) {
+        return DispatchTable.pack(Type.KEYSYM.getOrCreate(key));
+    }
+
+    private static Macro macro(int... keys) {
+        List<InputConstants.Key> sequence = new ArrayList<>();
+        for (int key : keys) sequence.add(Type.KEYSYM.getOrCreate(key));
+        return new Macro(false, false, false, "", Macro.ConflictStrategy.SUBMIT, 
+                Macro.SendMode.SEND, 0, Macro.DelayUnit.TICKS, Macro.CatchUpPolicy.ONCE, 
+                Macro.RetriggerPolicy.PARALLEL, new ArrayList<>(), new KeySequence(sequence), 
+                new ArrayList<>());
+    }
+
+    private static List<Macro> accepted(SequenceAutomaton automaton, int state) {
+        List<Macro> macros = new ArrayList<>();
+        if (state == SequenceAutomaton.NONE) return macros;
+        for (int i = automaton.macroStart(state); i < automaton.macroEnd(state); i++) {
+            macros.add(automaton.getMacro(i));
+        }
+        return macros;
+    }
+
+    @Test
+    void leafSequenceActivatesOnLastKey() {
+        Macro ab = macro(KEY_A, KEY_B);
+        SequenceAutomaton automaton = SequenceAutomaton.compile(List.of(ab));
+        assertEquals(SequenceAutomaton.NONE, automaton.step(code(KEY_A)));
+        assertEquals(List.of(ab), accepted(automaton, automaton.step(code(KEY_B))));
+        // Matching restarts from the root
+        assertEquals(SequenceAutomaton.NONE, automaton.step(code(KEY_B)));
+    }
+
+    @Test
+    void unboundSequencesAreIgnored() {
+        assertSame(SequenceAutomaton.EMPTY, SequenceAutomaton.compile(List.of(macro(KEY_A))));
+    }
+
+    @Test
+    void brokenSequenceRestartsFromPressedKey() {
+        Macro ab = macro(KEY_A, KEY_B);
+        SequenceAutomaton automaton = SequenceAutomaton.compile(List.of(ab));
+        automaton.step(code(KEY_A));
+        automaton.step(code(KEY_C));
+        assertEquals(SequenceAutomaton.NONE, automaton.step(code(KEY_B)));
+        automaton.step(code(KEY_A));
+        automaton.step(code(KEY_A));
+        assertEquals(List.of(ab), accepted(automaton, automaton.step(code(KEY_B))));
+    }
+
+    @Test
+    void prefixSequenceIsDeferredUntilBroken() {
+        Macro ab = macro(KEY_A, KEY_B);
+        Macro abc = macro(KEY_A, KEY_B, KEY_C);
+        SequenceAutomaton automaton = SequenceAutomaton.compile(List.of(ab, abc));
+        automaton.step(code(KEY_A));
+        assertEquals(SequenceAutomaton.NONE, automaton.step(code(KEY_B)));
+        assertEquals(List.of(abc), accepted(automaton, automaton.step(code(KEY_C))));
+
+        automaton.step(code(KEY_A));
+        automaton.step(code(KEY_B));
+        assertEquals(List.of(ab), accepted(automaton, automaton.step(code(KEY_X))));
+    }
+
+    @Test
+    void prefixSequenceIsActivatedOnTimeout() {
+        Macro ab = macro(KEY_A, KEY_B);
+        SequenceAutomaton automaton = SequenceAutomaton.compile(List.of(ab, macro(KEY_A, KEY_B, KEY_C)));
+        automaton.step(code(KEY_A));
+        automaton.step(code(KEY_B));
+        assertEquals(SequenceAutomaton.NONE, automaton.tick(3));
+        assertEquals(SequenceAutomaton.NONE, automaton.tick(3));
+        assertEquals(List.of(ab), accepted(automaton, automaton.tick(3)));
+        // Timed out sequences are abandoned
+        assertEquals(SequenceAutomaton.NONE, automaton.step(code(KEY_C)));
+    }
+
+    @Test
+    void deferredSequenceIsKeptWhenBrokenByAnotherSequence() {
+        // Sequences of one key are unbound, so a / a b / c is x a / x a b / c d
+        Macro xa = macro(KEY_X, KEY_A);
+        Macro xab = macro(KEY_X, KEY_A, KEY_B);
+        Macro cd = macro(KEY_C, KEY_D);
+        SequenceAutomaton automaton = SequenceAutomaton.compile(List.of(xa, xab, cd));
+        automaton.step(code(KEY_X));
+        assertEquals(SequenceAutomaton.NONE, automaton.step(code(KEY_A)));
+        assertEquals(List.of(xa), accepted(automaton, automaton.step(code(KEY_C))));
+        assertEquals(SequenceAutomaton.NONE, automaton.pollPending());
+        assertEquals(List.of(cd), accepted(automaton, automaton.step(code(KEY_D))));
+    }
+
+    @Test
+    void sharedSequenceActivatesAllMacros() {
+        Macro first = macro(KEY_A, KEY_B);
+        Macro second = macro(KEY_A, KEY_B);
+        SequenceAutomaton automaton = SequenceAutomaton.compile(List.of(first, second));
+        automaton.step(code(KEY_A));
+        assertEquals(List.of(first, second), accepted(automaton, automaton.step(code(KEY_B))));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.terminalmc.commandkeys.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlaceholderUtilTest {
+    /**
+     * @return the rendered literal segments of {@code template}, with each 
+     * placeholder segment as {@code {}}.
+     */
+    private static String outline(MessageTemplate template) {
+        StringBuilder outline = new StringBuilder();
+        PlaceholderContext ctx = new PlaceholderContext();
+        for (MessageTemplate.Segment segment : template.getSegments()) {
+            if (segment.getClass().getSimpleName().equals("Literal")) {
+                ctx.begin();
+                segment.render(ctx);
+                outline.append(ctx.getResult());
+            } else {
+                outline.append("{}");
+            }
+        }
+        return outline.toString();
+    }
+
+    @Test
+    void messagesWithoutPlaceholdersAreLiteral() {
+        for (String message : new String[]{"hello", "100% sure", "%unknown%", "%pos", ""}) {
+            MessageTemplate template = PlaceholderUtil.compile(message);
+            assertTrue(template.isLiteral(), message);
+            assertEquals(message, template.getSource());
+        }
+    }
+
+    @Test
+    void simplePlaceholdersAreSplitOut() {
+        MessageTemplate template = PlaceholderUtil.compile("/tp %myname% %x% %y%%z%");
+        assertFalse(template.isLiteral());
+        assertEquals("/tp {} {} {}{}", outline(template));
+    }
+
+    @Test
+    void regexPlaceholdersAreSplitOut() {
+        assertEquals("at {} and {}!", 
+                outline(PlaceholderUtil.compile("at %posF12% and %lx+3%!")));
+        assertEquals("{}", outline(PlaceholderUtil.compile("%#<(\\w+)> hi%")));
+    }
+
+    @Test
+    void simplePlaceholderNestedInRegexPlaceholder() {
+        String message = "/msg %#%myname%: (.*)% ok";
+        MessageTemplate template = PlaceholderUtil.compile(message);
+        assertEquals(message, template.getSource());
+        // The nested placeholder is an argument, not a separate segment
+        assertEquals("/msg {} ok", outline(template));
+        // Arguments containing placeholders are checked when rendered
+        assertTrue(PlaceholderUtil.prepare(template));
+    }
+
+    @Test
+    void regexPlaceholderBesideNestedPlaceholder() {
+        assertEquals("{} {}", outline(PlaceholderUtil.compile("%myname% %#%myname% left%")));
+        assertEquals("{}{}", outline(PlaceholderUtil.compile("%#(.*)%%lastsent%")));
+    }
+
+    @Test
+    void validRegexArgumentsArePrepared() {
+        assertTrue(PlaceholderUtil.prepare(PlaceholderUtil.compile("%clipboard#^(\\d+)$%")));
+        assertTrue(PlaceholderUtil.prepare(MessageTemplate.literal("%#(%")));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.terminalmc.commandkeys.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+
+import static dev.terminalmc.commandkeys.util.RateController.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateControllerTest {
+    private static final double MIN = MIN_RATE / TICKS_PER_SECOND;
+
+    @Test
+    void throttleCutsRateOncePerHold() {
+        RateController controller = new RateController(0.5, 1);
+        assertTrue(controller.onThrottle(0));
+        assertEquals(0.25, controller.getRate(), 1e-9);
+        assertFalse(controller.onThrottle(HOLD_TICKS - 1));
+        assertEquals(0.25, controller.getRate(), 1e-9);
+        assertTrue(controller.onThrottle(HOLD_TICKS));
+        assertEquals(0.125, controller.getRate(), 1e-9);
+    }
+
+    @Test
+    void sendsDoNotRaiseRateDuringHold() {
+        RateController controller = new RateController(0.5, 1);
+        controller.onThrottle(0);
+        controller.onSend(1);
+        assertEquals(0.25, controller.getRate(), 1e-9);
+        controller.onSend(HOLD_TICKS);
+        assertTrue(controller.getRate() > 0.25);
+    }
+
+    @Test
+    void rateStaysWithinBounds() {
+        RateController controller = new RateController(0.5, 0.6);
+        for (long tick = 0; tick < 100 * HOLD_TICKS; tick += HOLD_TICKS) controller.onThrottle(tick);
+        assertEquals(MIN, controller.getRate(), 1e-9);
+        for (long tick = 0; tick < 1_000_000; tick++) controller.onSend(100 * HOLD_TICKS + tick);
+        assertEquals(0.6, controller.getRate(), 1e-9);
+        controller.setMaxRate(0.1);
+        assertEquals(0.1, controller.getRate(), 1e-9);
+        controller.reset(2, 1);
+        assertEquals(1, controller.getRate(), 1e-9);
+    }
+
+    @Test
+    void increaseIsIndependentOfRate() {
+        // Sending at the current rate for one second raises it by INCREASE 
+        // messages per second, whatever the rate
+        for (double rate : new double[]{0.05, 0.2, 0.5}) {
+            RateController controller = new RateController(rate, 1);
+            double sends = rate * TICKS_PER_SECOND;
+            for (int i = 0; i < Math.round(sends); i++) controller.onSend(i);
+            assertEquals(INCREASE, (controller.getRate() - rate) * TICKS_PER_SECOND, 0.01);
+        }
+    }
+
+    /**
+     * Drives the controller with a fake send loop against a fake server 
+     * which warns on every message exceeding its limit.
+     */
+    @Test
+    void convergesBelowServerLimit() {
+        int serverCount = 4;
+        int serverTicks = 20;
+        RateController controller = new RateController(1, 1);
+        ArrayDeque<Long> window = new ArrayDeque<>();
+        double credit = 0;
+        int throttles = 0;
+        int lateSends = 0;
+        int lateThrottles = 0;
+        long end = 20L * 60 * TICKS_PER_SECOND;
+        for (long tick = 0; tick < end; tick++) {
+            credit = Math.min(1, credit + controller.getRate());
+            if (credit < 1) continue;
+            credit -= 1;
+            // Sink
+            controller.onSend(tick);
+            while (!window.isEmpty() && tick - window.peekFirst() >= serverTicks) window.pollFirst();
+            window.addLast(tick);
+            boolean late = tick >= end / 2;
+            if (late) lateSends++;
+            if (window.size() > serverCount) {
+                if (controller.onThrottle(tick)) throttles++;
+                if (late) lateThrottles++;
+            }
+        }
+        double serverRate = (double)serverCount / serverTicks;
+        double lateRate = (double)lateSends / (end / 2);
+        assertTrue(throttles > 0);
+        assertTrue(controller.getRate() >= MIN);
+        // Settles near the server limit, exceeding it only occasionally
+        assertTrue(lateRate <= serverRate, "rate " + lateRate);
+        assertTrue(lateRate >= serverRate / 2, "rate " + lateRate);
+        assertTrue(lateThrottles < lateSends / 20, lateThrottles + " of " + lateSends);
+    }
+}
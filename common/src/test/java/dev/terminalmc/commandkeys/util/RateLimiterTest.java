@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.terminalmc.commandkeys.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    @Test
+    void burstLimitAllowsCountPerWindow() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(2, 10, 0, 0);
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(0));
+        assertFalse(limiter.tryAcquire(0));
+        assertEquals(11, limiter.ticksUntilAvailable(0));
+        assertTrue(limiter.isLimited(10));
+        assertFalse(limiter.isLimited(11));
+        assertEquals(0, limiter.ticksUntilAvailable(11));
+    }
+
+    @Test
+    void windowSlidesWithEachActivation() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(2, 10, 0, 0);
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(5));
+        assertFalse(limiter.tryAcquire(10));
+        assertTrue(limiter.tryAcquire(11));
+        assertFalse(limiter.tryAcquire(15));
+        assertTrue(limiter.tryAcquire(16));
+    }
+
+    @Test
+    void recordReplacesOldestWhenFull() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(1, 5, 0, 0);
+        limiter.record(0);
+        limiter.record(3);
+        assertTrue(limiter.isLimited(8));
+        assertFalse(limiter.isLimited(9));
+    }
+
+    @Test
+    void sustainedLimitRefillsFractionally() {
+        RateLimiter limiter = new RateLimiter();
+        // 1 token per 2 ticks, up to 2 stored
+        limiter.configure(10, 1, 2, 0.5);
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(0));
+        assertFalse(limiter.tryAcquire(0));
+        assertEquals(2, limiter.ticksUntilAvailable(0));
+        assertFalse(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(2));
+        assertFalse(limiter.tryAcquire(3));
+        // Tokens do not accumulate beyond the capacity
+        assertTrue(limiter.tryAcquire(100));
+        assertTrue(limiter.tryAcquire(100));
+        assertFalse(limiter.tryAcquire(100));
+    }
+
+    @Test
+    void reconfiguringKeepsActivationsUnlessCountChanges() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(1, 10, 0, 0);
+        limiter.record(0);
+        limiter.configure(1, 20, 0, 0);
+        assertTrue(limiter.isLimited(15));
+        limiter.configure(2, 20, 0, 0);
+        limiter.record(15);
+        assertFalse(limiter.isLimited(15));
+    }
+
+    @Test
+    void zeroCountLimitsEverything() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.configure(0, 10, 0, 0);
+        assertFalse(limiter.tryAcquire(0));
+        assertFalse(limiter.tryAcquire(1000));
+    }
+}
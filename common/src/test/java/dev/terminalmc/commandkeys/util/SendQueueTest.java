@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.terminalmc.commandkeys.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dev.terminalmc.commandkeys.util.SendQueue.OverflowPolicy.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendQueueTest {
+    private final List<String> dropped = new ArrayList<>();
+    private final List<String> sent = new ArrayList<>();
+
+    private SendQueue queue(int capacity) {
+        return new SendQueue(capacity, (message) -> dropped.add(message.getSource()));
+    }
+
+    private static void offer(SendQueue queue, Object source, boolean priority, String... messages) {
+        for (String message : messages) {
+            assertTrue(queue.offer(MessageTemplate.literal(message), false, false, 
+                    DROP_NEWEST, source, priority));
+        }
+    }
+
+    private void drain(SendQueue queue) {
+        while (queue.poll((message, history, hud) -> sent.add(message.getSource())));
+    }
+
+    @Test
+    void lanesAreInterleaved() {
+        SendQueue queue = queue(16);
+        Object a = new Object();
+        Object b = new Object();
+        Object c = new Object();
+        offer(queue, a, false, "a1", "a2", "a3");
+        offer(queue, b, false, "b1");
+        offer(queue, c, false, "c1", "c2");
+        drain(queue);
+        assertEquals(List.of("a1", "b1", "c1", "a2", "c2", "a3"), sent);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void priorityLanesAreWeighted() {
+        SendQueue queue = queue(32);
+        Object user = new Object();
+        Object background = new Object();
+        offer(queue, background, false, "b1", "b2", "b3");
+        for (int i = 1; i <= 10; i++) offer(queue, user, true, "p" + i);
+        drain(queue);
+        assertEquals(List.of("p1", "p2", "p3", "p4", "b1", "p5", "p6", "p7", "p8", "b2", 
+                "p9", "p10", "b3"), sent);
+    }
+
+    @Test
+    void backgroundLanesAreNotStarved() {
+        SendQueue queue = queue(64);
+        Object background = new Object();
+        offer(queue, background, false, "b");
+        for (int i = 0; i < 40; i++) offer(queue, new Object(), true, "p");
+        drain(queue);
+        assertEquals(SendQueue.PRIORITY_WEIGHT, sent.indexOf("b"));
+    }
+
+    @Test
+    void overflowPolicies() {
+        SendQueue queue = queue(2);
+        Object a = new Object();
+        Object b = new Object();
+        offer(queue, a, false, "a1");
+        offer(queue, b, false, "b1");
+        assertTrue(queue.isFull());
+        assertFalse(queue.offer(MessageTemplate.literal("b2"), false, false, DROP_NEWEST, b, false));
+        assertFalse(queue.offer(MessageTemplate.literal("b2"), false, false, REJECT, b, false));
+        assertTrue(dropped.isEmpty());
+        assertTrue(queue.offer(MessageTemplate.literal("b2"), false, false, DROP_OLDEST, b, false));
+        assertEquals(List.of("a1"), dropped);
+        drain(queue);
+        assertEquals(List.of("b1", "b2"), sent);
+    }
+
+    @Test
+    void reducingCapacityKeepsNewest() {
+        SendQueue queue = queue(4);
+        Object a = new Object();
+        Object b = new Object();
+        offer(queue, a, false, "a1");
+        offer(queue, b, false, "b1");
+        offer(queue, a, false, "a2");
+        offer(queue, b, false, "b2");
+        queue.setCapacity(2);
+        assertEquals(List.of("a1", "b1"), dropped);
+        assertEquals(2, queue.size());
+        drain(queue);
+        assertEquals(List.of("a2", "b2"), sent);
+    }
+
+    @Test
+    void removedLaneIsSkipped() {
+        SendQueue queue = queue(8);
+        Object a = new Object();
+        Object b = new Object();
+        offer(queue, a, false, "a1", "a2");
+        offer(queue, b, false, "b1", "b2");
+        assertEquals(2, queue.removeLane(a));
+        assertEquals(0, queue.removeLane(a));
+        assertEquals(6, queue.remaining());
+        drain(queue);
+        assertEquals(List.of("b1", "b2"), sent);
+    }
+
+    @Test
+    void flagsArePassedToSink() {
+        SendQueue queue = queue(4);
+        queue.offer(MessageTemplate.literal("m"), true, false, REJECT, this, false);
+        queue.poll((message, history, hud) -> {
+            assertTrue(history);
+            assertFalse(hud);
+        });
+        assertFalse(queue.poll((message, history, hud) -> fail()));
+    }
+}
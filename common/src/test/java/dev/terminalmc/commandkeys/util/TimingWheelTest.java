@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 TerminalMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.terminalmc.commandkeys.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private static class RecordingTimer extends TimingWheel.Timer {
+        final TimingWheel wheel;
+        final List<Long> expiries = new ArrayList<>();
+
+        RecordingTimer(TimingWheel wheel) {
+            this.wheel = wheel;
+        }
+
+        @Override
+        protected void expire() {
+            expiries.add(wheel.now());
+        }
+    }
+
+    private static void advance(TimingWheel wheel, long ticks) {
+        for (long i = 0; i < ticks; i++) wheel.tick();
+    }
+
+    @Test
+    void timersExpireAfterDelayAtEveryLevel() {
+        long[] delays = {1, 2, 63, 64, 65, 127, 4095, 4096, 4097, 100_000, 262_143, 262_144};
+        for (long offset : new long[]{0, 1, 63, 4000}) {
+            TimingWheel wheel = new TimingWheel();
+            advance(wheel, offset);
+            List<RecordingTimer> timers = new ArrayList<>();
+            for (long delay : delays) {
+                RecordingTimer timer = new RecordingTimer(wheel);
+                wheel.schedule(timer, delay);
+                timers.add(timer);
+            }
+            assertEquals(delays.length, wheel.size());
+            advance(wheel, delays[delays.length - 1]);
+            for (int i = 0; i < delays.length; i++) {
+                assertEquals(List.of(offset + delays[i]), timers.get(i).expiries, 
+                        "delay " + delays[i] + " from " + offset);
+            }
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    void timersBeyondSpanExpireOnTime() {
+        TimingWheel wheel = new TimingWheel();
+        advance(wheel, 5);
+        RecordingTimer timer = new RecordingTimer(wheel);
+        long delay = (1L << (6 * TimingWheel.LEVELS)) + 1000;
+        wheel.schedule(timer, delay);
+        advance(wheel, delay);
+        assertEquals(List.of(5 + delay), timer.expiries);
+    }
+
+    @Test
+    void nonPositiveDelayExpiresNextTick() {
+        TimingWheel wheel = new TimingWheel();
+        RecordingTimer timer = new RecordingTimer(wheel);
+        wheel.schedule(timer, 0);
+        wheel.tick();
+        assertEquals(List.of(1L), timer.expiries);
+    }
+
+    @Test
+    void cancelledTimerDoesNotExpire() {
+        TimingWheel wheel = new TimingWheel();
+        RecordingTimer timer = new RecordingTimer(wheel);
+        wheel.schedule(timer, 100);
+        assertTrue(timer.isScheduled());
+        wheel.cancel(timer);
+        assertFalse(timer.isScheduled());
+        assertEquals(0, wheel.size());
+        advance(wheel, 200);
+        assertTrue(timer.expiries.isEmpty());
+    }
+
+    @Test
+    void reschedulingReplacesDeadline() {
+        TimingWheel wheel = new TimingWheel();
+        RecordingTimer timer = new RecordingTimer(wheel);
+        wheel.schedule(timer, 100);
+        wheel.schedule(timer, 10);
+        assertEquals(1, wheel.size());
+        advance(wheel, 200);
+        assertEquals(List.of(10L), timer.expiries);
+    }
+
+    @Test
+    void timerMayRescheduleItselfOnExpiry() {
+        TimingWheel wheel = new TimingWheel();
+        RecordingTimer timer = new RecordingTimer(wheel) {
+            @Override
+            protected void expire() {
+                super.expire();
+                if (expiries.size() < 3) wheel.schedule(this, 100);
+            }
+        };
+        wheel.schedule(timer, 100);
+        advance(wheel, 1000);
+        assertEquals(List.of(100L, 200L, 300L), timer.expiries);
+    }
+
+    @Test
+    void clearRemovesAllTimers() {
+        TimingWheel wheel = new TimingWheel();
+        RecordingTimer near = new RecordingTimer(wheel);
+        RecordingTimer far = new RecordingTimer(wheel);
+        wheel.schedule(near, 5);
+        wheel.schedule(far, 50_000);
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        assertFalse(near.isScheduled());
+        advance(wheel, 60_000);
+        assertTrue(near.expiries.isEmpty());
+        assertTrue(far.expiries.isEmpty());
+    }
+}